@@ -0,0 +1,21 @@
+/**
+ * The activation function applied to a layer of Neurons. Training always
+ * uses the exact sigmoid; prediction can use a faster approximation such
+ * as a SigmoidTable when a small, bounded error is acceptable.
+ * @author Lou Brand
+ */
+
+public interface Activation{
+    /**
+     * The exact sigmoid, 1 / (1 + e ^ -x), from the fastest available Kernels
+     */
+    Activation EXACT = Kernels.get()::sigmoid;
+
+    /**
+     * Replaces each value of a run with its activation
+     * @param values The array
+     * @param start Index of the first value
+     * @param length Number of values
+     */
+    void apply(double[] values, int start, int length);
+}
@@ -0,0 +1,287 @@
+/**
+ * Screens a whole library of compounds with the collection of pre-trained
+ * neural networks. The library holds one compound per line in the same
+ * format as the input lines of pybelData.txt (raw, not normalized). For
+ * every compound one line is written to the results file:
+ *
+ * yes|no [tab] fraction of yes votes
+ *
+ * or "error" if the compound is outside the range of our dataset.
+ * Compounds are scored in blocks, and blocks are spread over a pool of
+ * worker threads.
+ *
+ * With a Cascade, a small prefilter scores every compound first and only
+ * the borderline ones are scored by the collection. For the others the
+ * prefilter decides, and the collection never votes. Each line then has
+ * the prefilter's score as a third column:
+ *
+ * yes|no [tab] fraction of yes votes, or - if the prefilter decided [tab] prefilter score
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BatchScreen{
+    private final int BLOCK_SIZE = 256; //Compounds scored together by each voter
+    private Predictor myPredictor;
+    private int numThreads;
+    private Cascade myCascade;          //The first stage, or null to score every compound with the collection
+    private AtomicLong[] stageCompounds = {new AtomicLong(), new AtomicLong()};    //Compounds scored by each stage
+    private AtomicLong[] stageNanos = {new AtomicLong(), new AtomicLong()};        //Time each stage took, over every thread
+
+    /**
+     * The decisions for a block of compounds
+     */
+    private static class ScoredBlock{
+        boolean[] passes;       //Whether each compound crosses the BBB
+        double[] fractions;     //Each compound's fraction of yes votes, or -1 if it is outside our dataset, or NaN if the collection didn't vote
+        double[] scores;        //Each compound's prefilter score, or null without a Cascade
+    }
+
+    /**
+     * Screens a library of compounds
+     * @param args The library file, the results file, and optionally the
+     * number of worker threads, the error bound of a fast sigmoid table
+     * ("exact" for none), and a prefilter model file and band for a
+     * two stage cascade
+     */
+    public static void main(String[] args){
+        if (args.length < 2){
+            System.out.println("Usage: java BatchScreen library.txt results.txt [threads] [sigmoidError|exact] [prefilter.model] [band]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        try{
+            Predictor myPredictor = Predictor.read(Predictor.MODEL_FILE);
+            myPredictor.setFused(true);
+            if (args.length > 3 && !args[3].equals("exact")){
+                myPredictor.setActivation(new SigmoidTable(Double.parseDouble(args[3])));
+            }
+            BatchScreen myScreen = new BatchScreen(myPredictor, threads);
+            if (args.length > 4){
+                double band = args.length > 5 ? Double.parseDouble(args[5]) : Cascade.DEFAULT_BAND;
+                Cascade myCascade = new Cascade(Predictor.read(args[4]), band);
+                myCascade.calibrate(myPredictor, Dataset.read("pybelData.bin"));
+                myScreen.setCascade(myCascade);
+            }
+            myScreen.screen(args[0], args[1]);
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Creates a BatchScreen around a loaded Predictor
+     * @param predictor The loaded collection of neural networks
+     * @param threads Number of blocks scored at once
+     */
+    public BatchScreen(Predictor predictor, int threads){
+        if (threads < 1){
+            throw new IllegalArgumentException("The number of threads (" + threads + ") must be at least 1.");
+        }
+        myPredictor = predictor;
+        numThreads = threads;
+    }
+
+    /**
+     * Screens in two stages: the Cascade's prefilter first, and the
+     * collection only for borderline compounds
+     * @param cascade The first stage, or null to use the collection alone
+     */
+    public void setCascade(Cascade cascade){
+        myCascade = cascade;
+    }
+
+    /**
+     * Scores every compound in a library and writes the results in the
+     * same order, then reports the throughput
+     * @param libraryFile One compound per line
+     * @param resultsFile Where the results are written
+     * @return The number of compounds screened
+     */
+    public long screen(String libraryFile, String resultsFile) throws IOException{
+        long startTime = System.nanoTime();
+        long numCompounds = 0;
+        int numIn = myPredictor.numInputs();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        ArrayDeque<Future<ScoredBlock>> scoring = new ArrayDeque<Future<ScoredBlock>>();
+        for (int stage = 0; stage < 2; stage++){
+            stageCompounds[stage].set(0);
+            stageNanos[stage].set(0);
+        }
+
+        try (NumberLineReader reader = new NumberLineReader(new FileInputStream(libraryFile), (byte)'\t');
+             BufferedWriter out = new BufferedWriter(new FileWriter(resultsFile))){
+            double[] block = new double[BLOCK_SIZE * numIn];
+            int rows = 0;
+            int length;
+
+            while ((length = reader.readLine()) != -1){
+                if (length == 0){
+                    continue; //Skip blank lines
+                }
+                if (length != numIn){
+                    throw new IllegalArgumentException("Expected " + numIn + " inputs on line " + reader.getLineNumber() + " but got " + length);
+                }
+                System.arraycopy(reader.getValues(), 0, block, rows * numIn, numIn);
+                rows++;
+                if (rows == BLOCK_SIZE){
+                    scoring.add(submit(pool, block, rows));
+                    numCompounds += rows;
+                    block = new double[BLOCK_SIZE * numIn];
+                    rows = 0;
+                    // Keep a few blocks queued per thread, and write finished ones in order
+                    while (scoring.size() > 2 * numThreads){
+                        write(out, scoring.poll());
+                    }
+                }
+            }
+            if (rows > 0){
+                scoring.add(submit(pool, block, rows));
+                numCompounds += rows;
+            }
+            while (!scoring.isEmpty()){
+                write(out, scoring.poll());
+            }
+        } finally{
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println("Screened " + numCompounds + " compounds in " + seconds + " seconds");
+        System.out.println("Compounds per second: " + numCompounds / seconds);
+        System.out.println("Compounds per second per thread: " + numCompounds / seconds / numThreads);
+        if (myCascade != null){
+            long stageOne = stageCompounds[0].get();
+            long stageTwo = stageCompounds[1].get();
+            System.out.println("Stage 1 (prefilter): " + stageOne + " compounds in " + stageNanos[0].get() / 1e9 + " thread seconds");
+            System.out.println("Stage 2 (collection): " + stageTwo + " borderline compounds (" + 100.0 * stageTwo / Math.max(stageOne, 1)
+                               + "%, band " + myCascade.getBand() + " around " + myCascade.getThreshold() + ") in "
+                               + stageNanos[1].get() / 1e9 + " thread seconds");
+        }
+        return numCompounds;
+    }
+
+    /**
+     * Scores a block of compounds on the worker pool
+     * @param pool The worker pool
+     * @param block The raw inputs of the compounds
+     * @param rows Number of compounds in the block
+     * @return The decisions for each compound, once they are ready
+     */
+    private Future<ScoredBlock> submit(ExecutorService pool, double[] block, int rows){
+        return pool.submit(() -> myCascade == null ? scoreAll(block, rows) : scoreCascade(block, rows));
+    }
+
+    /**
+     * Scores every compound of a block with the collection
+     * @param block The raw inputs of the compounds
+     * @param rows Number of compounds in the block
+     * @return The decisions for each compound
+     */
+    private ScoredBlock scoreAll(double[] block, int rows){
+        int[] yesVotes = new int[rows];
+        myPredictor.predictBlock(block, rows, yesVotes);
+
+        ScoredBlock scored = new ScoredBlock();
+        scored.passes = new boolean[rows];
+        scored.fractions = new double[rows];
+        int numVoters = myPredictor.numVoters();
+        for (int r = 0; r < rows; r++){
+            if (yesVotes[r] < 0){
+                scored.fractions[r] = -1.0;
+            } else {
+                Vote currentVote = new Vote(yesVotes[r], numVoters - yesVotes[r]);
+                scored.passes[r] = currentVote.passes();
+                scored.fractions[r] = currentVote.getYesFraction();
+            }
+        }
+        return scored;
+    }
+
+    /**
+     * Scores a block of compounds with the prefilter, then the borderline
+     * ones again with the collection
+     * @param block The raw inputs of the compounds
+     * @param rows Number of compounds in the block
+     * @return The decisions for each compound
+     */
+    private ScoredBlock scoreCascade(double[] block, int rows){
+        int numIn = myPredictor.numInputs();
+        long startTime = System.nanoTime();
+        ScoredBlock scored = new ScoredBlock();
+        scored.passes = new boolean[rows];
+        scored.fractions = new double[rows];
+        scored.scores = new double[rows];
+        myCascade.score(block, rows, scored.scores);
+
+        int[] borderline = new int[rows];
+        int numBorderline = 0;
+        for (int r = 0; r < rows; r++){
+            double score = scored.scores[r];
+            if (score < 0.0){
+                scored.fractions[r] = -1.0;
+            } else {
+                scored.passes[r] = myCascade.passes(score);
+                scored.fractions[r] = Double.NaN;
+                if (myCascade.isBorderline(score)){
+                    borderline[numBorderline++] = r;
+                }
+            }
+        }
+        long stageOneTime = System.nanoTime();
+        stageCompounds[0].addAndGet(rows);
+        stageNanos[0].addAndGet(stageOneTime - startTime);
+
+        if (numBorderline > 0){
+            double[] subBlock = new double[numBorderline * numIn];
+            for (int b = 0; b < numBorderline; b++){
+                System.arraycopy(block, borderline[b] * numIn, subBlock, b * numIn, numIn);
+            }
+            ScoredBlock rescored = scoreAll(subBlock, numBorderline);
+            for (int b = 0; b < numBorderline; b++){
+                scored.passes[borderline[b]] = rescored.passes[b];
+                scored.fractions[borderline[b]] = rescored.fractions[b];
+            }
+            stageCompounds[1].addAndGet(numBorderline);
+            stageNanos[1].addAndGet(System.nanoTime() - stageOneTime);
+        }
+        return scored;
+    }
+
+    /**
+     * Writes the results of a scored block
+     * @param out The results file
+     * @param scored The decisions for each compound in the block
+     */
+    private void write(BufferedWriter out, Future<ScoredBlock> scored) throws IOException{
+        ScoredBlock block;
+        try{
+            block = scored.get();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while screening", e);
+        } catch (ExecutionException e){
+            throw new IllegalStateException("A block failed to score", e.getCause());
+        }
+
+        for (int r = 0; r < block.passes.length; r++){
+            if (block.fractions[r] < 0.0){
+                out.write("error");
+            } else {
+                out.write(block.passes[r] ? "yes" : "no");
+                out.write(Double.isNaN(block.fractions[r]) ? "\t-" : "\t" + block.fractions[r]);
+                if (block.scores != null){
+                    out.write("\t" + block.scores[r]);
+                }
+            }
+            out.newLine();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * Times the hot paths of the neural network so that changes to them can
+ * be measured: a single forward pass, a single training step, a full
+ * training epoch over pybelData.bin, an ensemble vote for one compound
+ * (in double precision with the exact sigmoid and with a SigmoidTable,
+ * and in float precision), and loading the dataset from
+ * pybelSmiles.ser and pybelData.bin or parsing it from pybelData.txt. The kernels benchmark times each
+ * layer loop with the scalar kernels and, when the Vector API is enabled,
+ * the vector kernels.
+ *
+ * Each benchmark is warmed up first so the JIT has compiled it, then run
+ * for several timed iterations. The throughput (operations per second)
+ * and the allocation rate (bytes allocated per operation, as counted by
+ * the JVM for the benchmark thread) are reported for each one. The
+ * allocations check fails if a warmed-up training epoch allocates anything.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+public class Benchmark{
+    private static final long WARMUP_NANOS = 2_000_000_000L;     //Time spent warming up each benchmark
+    private static final long ITERATION_NANOS = 1_000_000_000L;  //Length of each timed iteration
+    private static final int ITERATIONS = 5;
+    private static final int NUM_VOTERS = 25;   //Same size as the SurveyTest collection
+    private static final long SEED = 42;
+    private static double sink;                 //Results are added here so the JIT can't drop the work
+
+    private ArrayList<IOTuple> tuples;
+    private Dataset data;
+    private com.sun.management.ThreadMXBean threads;
+
+    /**
+     * A single operation to be timed
+     */
+    private interface Operation{
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs every benchmark, or only those named on the command line
+     * @param args Optional benchmark names: forward, trainStep, epoch,
+     * vote, floatVote, loadSer, loadBin, parse, loadModel, kernels,
+     * allocations
+     */
+    public static void main(String[] args){
+        try{
+            Benchmark myBenchmark = new Benchmark("pybelData.bin");
+            myBenchmark.run(args);
+        }
+        catch(Exception ex){ex.printStackTrace();}
+    }
+
+    /**
+     * Loads the dataset used by the benchmarks
+     * @param dataFile The binary Dataset file
+     */
+    public Benchmark(String dataFile) throws IOException{
+        data = Dataset.read(dataFile);
+        tuples = data.toIOTuples();
+        threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Runs the selected benchmarks
+     * @param names The benchmarks to run, or none to run all of them
+     */
+    public void run(String[] names) throws Exception{
+        System.out.println("Kernels: " + Kernels.get().getName());
+        System.out.println("Benchmark\tops/s\t\t+/-\t\tbytes/op");
+
+        if (selected(names, "forward")){
+            NeuralNetwork myNN = createNetwork();
+            int[] next = {0};
+            measure("forward", () -> {
+                myNN.newIO(tuples.get(next[0]));
+                myNN.feedForward();
+                sink += myNN.getCalculatedValue();
+                next[0] = (next[0] + 1) % tuples.size();
+            });
+        }
+
+        if (selected(names, "trainStep")){
+            NeuralNetwork myNN = createNetwork();
+            int[] next = {0};
+            measure("trainStep", () -> {
+                myNN.newIO(tuples.get(next[0]));
+                myNN.feedForward();
+                myNN.backProp();
+                next[0] = (next[0] + 1) % tuples.size();
+            });
+            sink += myNN.getCalculatedValue();
+        }
+
+        if (selected(names, "epoch")){
+            NeuralNetwork myNN = createNetwork();
+            measure("epoch", () -> myNN.train(data, 1));
+            sink += myNN.getCalculatedValue();
+        }
+
+        if (selected(names, "vote")){
+            EnsembleTrainer myTrainer = new EnsembleTrainer(Runtime.getRuntime().availableProcessors(), SEED);
+            Predictor myPredictor = new Predictor(myTrainer.createVoters(tuples, NUM_VOTERS, 1),
+                                                  data.getInputMinima(), data.getInputMaxima());
+            double[] compound = rawInputs(0);
+            measure("vote", () -> sink += myPredictor.predict(compound).getYes());
+            myPredictor.setEarlyExit(true);
+            measure("earlyVote", () -> sink += myPredictor.predict(compound).getYes());
+            myPredictor.setEarlyExit(false);
+            myPredictor.setFused(true);
+            measure("fusedVote", () -> sink += myPredictor.predict(compound).getYes());
+            myPredictor.setFused(false);
+            myPredictor.setActivation(new SigmoidTable(1e-4));
+            measure("tableVote", () -> sink += myPredictor.predict(compound).getYes());
+        }
+
+        if (selected(names, "floatVote")){
+            EnsembleTrainer myTrainer = new EnsembleTrainer(Runtime.getRuntime().availableProcessors(), SEED);
+            FloatEnsemble myEnsemble = new FloatEnsemble(myTrainer.createVoters(tuples, NUM_VOTERS, 1));
+            float[] compound = new float[data.numInputs()];
+            for (int i = 0; i < compound.length; i++){
+                compound[i] = (float)data.getInputs()[i];
+            }
+            float[] hiddens = new float[myEnsemble.getHiddenSize()];
+            measure("floatVote", () -> sink += myEnsemble.vote(compound, hiddens));
+        }
+
+        if (selected(names, "loadSer")){
+            measure("loadSer", () -> {
+                try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream("pybelSmiles.ser")))){
+                    sink += ((ArrayList<IOTuple>)in.readObject()).size();
+                }
+            });
+        }
+
+        if (selected(names, "loadBin")){
+            measure("loadBin", () -> sink += Dataset.read("pybelData.bin").size());
+        }
+
+        if (selected(names, "parse")){
+            measure("parse", () -> sink += DataParser.read("pybelData.txt").size());
+        }
+
+        if (selected(names, "loadModel")){
+            EnsembleTrainer myTrainer = new EnsembleTrainer(Runtime.getRuntime().availableProcessors(), SEED);
+            ArrayList<NeuralNetwork> voters = myTrainer.createVoters(tuples, NUM_VOTERS, 1);
+            File serFile = File.createTempFile("voters", ".ser");
+            File modelFile = File.createTempFile("voters", ".model");
+            serFile.deleteOnExit();
+            modelFile.deleteOnExit();
+            try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(serFile))){
+                out.writeObject(voters);
+            }
+            new Predictor(voters, data.getInputMinima(), data.getInputMaxima()).write(modelFile.getPath());
+            measure("loadVoterSer", () -> {
+                try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(serFile)))){
+                    sink += ((ArrayList<NeuralNetwork>)in.readObject()).size();
+                }
+            });
+            measure("loadModel", () -> sink += Predictor.read(modelFile.getPath()).numVoters());
+        }
+
+        if (selected(names, "kernels")){
+            measureKernels(new ScalarKernels());
+            Kernels fastest = Kernels.get();
+            if (!(fastest instanceof ScalarKernels)){
+                measureKernels(fastest);
+            }
+        }
+
+        if (selected(names, "allocations")){
+            checkAllocations();
+        }
+
+        if (sink == 42.0){
+            System.out.println(); //Never true in practice, keeps sink alive
+        }
+    }
+
+    /**
+     * Times each kernel on rows the size of this dataset's network, so the
+     * scalar and vector kernels can be compared side by side
+     * @param kernels The kernels to time
+     */
+    private void measureKernels(Kernels kernels) throws Exception{
+        String prefix = kernels instanceof ScalarKernels ? "scalar." : "vector.";
+        int rowLength = data.numInputs() + 1;
+        int numHidden = createNetwork().getHiddenSize();
+        double[] weights = new double[numHidden * rowLength];
+        double[] momentum = new double[weights.length];
+        double[] input = new double[rowLength];
+        double[] hiddens = new double[numHidden];
+        float[] floatWeights = new float[weights.length];
+        float[] floatInput = new float[rowLength];
+        for (int i = 0; i < weights.length; i++){
+            weights[i] = Math.sin(i);
+            floatWeights[i] = (float)weights[i];
+        }
+        for (int i = 0; i < rowLength; i++){
+            input[i] = data.getInputs()[i % data.numInputs()];
+            floatInput[i] = (float)input[i];
+        }
+
+        measure(prefix + "dot", () -> {
+            for (int h = 0; h < numHidden; h++){
+                sink += kernels.dot(weights, h * rowLength, input, 0, rowLength);
+            }
+        });
+        measure(prefix + "floatDot", () -> {
+            for (int h = 0; h < numHidden; h++){
+                sink += kernels.dot(floatWeights, h * rowLength, floatInput, 0, rowLength);
+            }
+        });
+        measure(prefix + "sigmoid", () -> {
+            for (int h = 0; h < numHidden; h++){
+                hiddens[h] = weights[h];
+            }
+            kernels.sigmoid(hiddens, 0, numHidden);
+            sink += hiddens[0];
+        });
+        measure(prefix + "update", () -> {
+            for (int h = 0; h < numHidden; h++){
+                kernels.update(weights, momentum, h * rowLength, 1e-9, input, 0, rowLength, .7, .5);
+            }
+        });
+    }
+
+    /**
+     * Makes sure a training epoch over the packed dataset allocates nothing
+     * once it has been warmed up, so long ensemble builds don't cause
+     * garbage collection
+     */
+    private void checkAllocations(){
+        long thread = Thread.currentThread().getId();
+        NeuralNetwork myNN = createNetwork();
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd){
+            myNN.train(data, 1);
+        }
+
+        long startBytes = threads.getThreadAllocatedBytes(thread);
+        for (int epoch = 0; epoch < ITERATIONS; epoch++){
+            myNN.train(data, 1);
+        }
+        long bytesPerEpoch = (threads.getThreadAllocatedBytes(thread) - startBytes) / ITERATIONS;
+        sink += myNN.getCalculatedValue();
+
+        if (bytesPerEpoch != 0){
+            throw new IllegalStateException("A training epoch allocated " + bytesPerEpoch + " bytes");
+        }
+        System.out.println("allocations	passed, 0 bytes per training epoch");
+    }
+
+    /**
+     * Checks whether a benchmark was asked for
+     * @param names The benchmarks named on the command line
+     * @param name The benchmark
+     * @return True if no names were given or the name is one of them
+     */
+    private boolean selected(String[] names, String name){
+        if (names.length == 0){
+            return true;
+        }
+        for (String current : names){
+            if (current.equals(name)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a NeuralNetwork sized for the dataset with fixed starting weights
+     * @return The NeuralNetwork
+     */
+    private NeuralNetwork createNetwork(){
+        NeuralNetwork myNN = new NeuralNetwork();
+        myNN.initialize(tuples.get(0), SEED);
+        return myNN;
+    }
+
+    /**
+     * Turns a normalized row of the dataset back into raw input parameters,
+     * as a Predictor would receive them
+     * @param row The row of the dataset
+     * @return The raw input parameters
+     */
+    private double[] rawInputs(int row){
+        double[] minima = data.getInputMinima();
+        double[] maxima = data.getInputMaxima();
+        double[] raw = new double[data.numInputs()];
+        for (int i = 0; i < raw.length; i++){
+            raw[i] = minima[i] + data.getInputs()[row * raw.length + i] * (maxima[i] - minima[i]);
+        }
+        return raw;
+    }
+
+    /**
+     * Warms up an operation, then times it and prints its throughput and
+     * allocation rate
+     * @param name The name of the benchmark
+     * @param op The operation
+     */
+    private void measure(String name, Operation op) throws Exception{
+        long thread = Thread.currentThread().getId();
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd){
+            op.run();
+        }
+
+        double[] throughput = new double[ITERATIONS];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int iteration = 0; iteration < ITERATIONS; iteration++){
+            long ops = 0;
+            long startBytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            long elapsed;
+            do{
+                op.run();
+                ops++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ITERATION_NANOS);
+            totalBytes += threads.getThreadAllocatedBytes(thread) - startBytes;
+            totalOps += ops;
+            throughput[iteration] = ops / (elapsed / 1e9);
+        }
+
+        double mean = 0.0;
+        for (double current : throughput){
+            mean += current;
+        }
+        mean /= ITERATIONS;
+        double variance = 0.0;
+        for (double current : throughput){
+            variance += (current - mean) * (current - mean);
+        }
+        double error = Math.sqrt(variance / (ITERATIONS - 1));
+
+        System.out.printf("%-12s\t%12.2f\t%12.2f\t%12.1f%n", name, mean, error, (double)totalBytes / totalOps);
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ * The first stage of a two stage screen. A small prefilter network (the
+ * DistillPredictor student, or a single voter) scores every compound, and
+ * only compounds whose score is within the band around the threshold are
+ * borderline and passed on to the whole collection. The threshold is
+ * calibrated so the prefilter agrees with the collection's decisions on
+ * our dataset as often as possible.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.util.Arrays;
+
+public class Cascade{
+    public static final double DEFAULT_BAND = .1;
+    private static final double[] BANDS = {0.0, .02, .05, .1, .15, .2, .3, .4, .5}; //Bands compared by main
+    private static final int REPEATS = 10;  //Passes over the dataset when timing each stage
+    private NeuralNetwork prefilter;
+    private double[] inputMin, inputMax;
+    private double threshold = .5;     //Prefilter scores at or above this are a yes
+    private double band;               //Scores closer than this to the threshold are borderline
+
+    /**
+     * Calibrates a prefilter against the collection on our dataset and
+     * shows, for a range of bands, how many compounds would reach the
+     * collection and how often the cascade would agree with it
+     * @param args Optional prefilter model file (BBBStudent.model)
+     */
+    public static void main(String[] args){
+        String prefilterFile = args.length > 0 ? args[0] : DistillPredictor.STUDENT_FILE;
+
+        try{
+            Predictor ensemble = Predictor.read(Predictor.MODEL_FILE);
+            ensemble.setFused(true);
+            Dataset data = Dataset.read("pybelData.bin");
+            Cascade myCascade = new Cascade(Predictor.read(prefilterFile), DEFAULT_BAND);
+            myCascade.calibrate(ensemble, data);
+
+            int numIn = data.numInputs();
+            double[] scores = new double[data.size()];
+            boolean[] decisions = new boolean[data.size()];
+            double[] query = new double[numIn];
+            long startTime = System.nanoTime();
+            for (int k = 0; k < REPEATS; k++){
+                myCascade.scoreNormalized(data.getInputs(), data.size(), scores);
+            }
+            double prefilterTime = (System.nanoTime() - startTime) / ((double)REPEATS * data.size());
+            startTime = System.nanoTime();
+            for (int k = 0; k < REPEATS; k++){
+                for (int r = 0; r < data.size(); r++){
+                    System.arraycopy(data.getInputs(), r * numIn, query, 0, numIn);
+                    decisions[r] = ensemble.vote(query).passes();
+                }
+            }
+            double ensembleTime = (System.nanoTime() - startTime) / ((double)REPEATS * data.size());
+
+            System.out.println("Band\tTo stage 2\tAgreement\tCost");
+            for (double width : BANDS){
+                int borderline = 0;
+                int agree = 0;
+                for (int r = 0; r < data.size(); r++){
+                    if (Math.abs(scores[r] - myCascade.threshold) < width){
+                        borderline++;
+                        agree++; //The collection decides borderline compounds itself
+                    } else if ((scores[r] >= myCascade.threshold) == decisions[r]){
+                        agree++;
+                    }
+                }
+                double escalated = (double)borderline / data.size();
+                double cost = (prefilterTime + escalated * ensembleTime) / ensembleTime;
+                System.out.printf("%.2f\t%.1f%%\t\t%.2f%%\t\t%.2f%n", width, 100.0 * escalated,
+                                  100.0 * agree / data.size(), cost);
+            }
+            System.out.println("Cost is the time per compound compared with the collection alone ("
+                               + (long)ensembleTime + " ns)");
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Creates a Cascade from a prefilter model file. A model with more than
+     * one voter contributes only its first.
+     * @param prefilterModel The small model that scores every compound
+     * @param uncertainty Half the width of the band of borderline scores
+     */
+    public Cascade(Predictor prefilterModel, double uncertainty){
+        if (!(uncertainty >= 0.0 && uncertainty <= 1.0)){
+            throw new IllegalArgumentException("The band (" + uncertainty + ") must be between 0 and 1");
+        }
+        prefilter = prefilterModel.getVoters().get(0);
+        inputMin = prefilterModel.getInputMinima();
+        inputMax = prefilterModel.getInputMaxima();
+        band = uncertainty;
+    }
+
+    /**
+     * Chooses the threshold at which the prefilter agrees with the
+     * collection's decisions on the most compounds, preferring the one
+     * closest to .5 when several are as good
+     * @param ensemble The whole collection
+     * @param data The normalized compounds
+     * @return The calibrated threshold
+     */
+    public double calibrate(Predictor ensemble, Dataset data){
+        int numIn = data.numInputs();
+        int rows = data.size();
+        double[] scores = new double[rows];
+        boolean[] decisions = new boolean[rows];
+        double[] query = new double[numIn];
+        scoreNormalized(data.getInputs(), rows, scores);
+        for (int r = 0; r < rows; r++){
+            System.arraycopy(data.getInputs(), r * numIn, query, 0, numIn);
+            decisions[r] = ensemble.vote(query).passes();
+        }
+
+        // Every score is a candidate threshold, as is .5. Sweeping the scores
+        // in order, a threshold at sorted score k makes every compound before
+        // it a no and every compound from it on a yes.
+        Integer[] order = new Integer[rows];
+        int totalYes = 0;
+        for (int r = 0; r < rows; r++){
+            order[r] = r;
+            if (decisions[r]){
+                totalYes++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[a], scores[b]));
+
+        double best = .5;
+        int bestAgree = agreement(scores, decisions, best);
+        int noBelow = 0;    //Collection no decisions below the candidate
+        int yesBelow = 0;   //Collection yes decisions below the candidate
+        for (int k = 0; k < rows; k++){
+            double candidate = scores[order[k]];
+            if (k == 0 || candidate != scores[order[k - 1]]){
+                int agree = noBelow + (totalYes - yesBelow);
+                if (agree > bestAgree || (agree == bestAgree && Math.abs(candidate - .5) < Math.abs(best - .5))){
+                    best = candidate;
+                    bestAgree = agree;
+                }
+            }
+            if (decisions[order[k]]){
+                yesBelow++;
+            } else {
+                noBelow++;
+            }
+        }
+        System.out.println("Calibrated threshold " + best + ": the prefilter alone agrees with the collection on "
+                           + bestAgree + " out of " + rows + " compounds (" + agreement(scores, decisions, .5) + " at .5)");
+        threshold = best;
+        return threshold;
+    }
+
+    /**
+     * Counts the compounds the prefilter decides the same way as the
+     * collection with a given threshold
+     * @param scores The prefilter's scores
+     * @param decisions The collection's decisions
+     * @param cut The threshold
+     * @return The number of matching decisions
+     */
+    private static int agreement(double[] scores, boolean[] decisions, double cut){
+        int agree = 0;
+        for (int r = 0; r < scores.length; r++){
+            if ((scores[r] >= cut) == decisions[r]){
+                agree++;
+            }
+        }
+        return agree;
+    }
+
+    /**
+     * Scores a block of compounds with the prefilter. Safe to call from
+     * many threads at once.
+     * @param rawInputs numRows rows of input (not normalized) parameters
+     * @param numRows Number of compounds in the block
+     * @param scores Where each compound's score is written, or -1 if it is
+     * outside the range of our dataset
+     */
+    public void score(double[] rawInputs, int numRows, double[] scores){
+        int numIn = inputMin.length;
+        if (rawInputs.length < numRows * numIn){
+            throw new IllegalArgumentException("Expected " + numRows * numIn + " inputs but got " + rawInputs.length);
+        }
+        double[] block = new double[numRows * numIn];
+        boolean[] outside = new boolean[numRows];
+        for (int r = 0; r < numRows; r++){
+            for (int i = 0; i < numIn; i++){
+                double range = inputMax[i] - inputMin[i];
+                double value = (rawInputs[r * numIn + i] - inputMin[i])/range;
+                if (!(value <= 1.0 && value >= -1.0)){
+                    outside[r] = true;
+                }
+                block[r * numIn + i] = value;
+            }
+        }
+        scoreNormalized(block, numRows, scores);
+        for (int r = 0; r < numRows; r++){
+            if (outside[r]){
+                scores[r] = -1.0;
+            }
+        }
+    }
+
+    /**
+     * Scores a block of normalized compounds with the prefilter
+     * @param block numRows rows of normalized input parameters
+     * @param numRows Number of compounds in the block
+     * @param scores Where each compound's score is written
+     */
+    private void scoreNormalized(double[] block, int numRows, double[] scores){
+        double[] hiddens = new double[numRows * prefilter.getHiddenSize()];
+        prefilter.calculateBlock(block, numRows, hiddens, scores, Activation.EXACT);
+    }
+
+    /**
+     * Checks whether a score is too close to the threshold for the
+     * prefilter to decide
+     * @param score The prefilter's score
+     * @return True if the collection has to decide
+     */
+    public boolean isBorderline(double score){
+        return Math.abs(score - threshold) < band;
+    }
+
+    /**
+     * Checks whether the prefilter thinks a compound crosses the
+     * blood-brain barrier
+     * @param score The prefilter's score
+     * @return True = Yes, False = No
+     */
+    public boolean passes(double score){
+        return score >= threshold;
+    }
+
+    /**
+     * Gets the threshold prefilter scores are compared with
+     * @return threshold The threshold
+     */
+    public double getThreshold(){
+        return threshold;
+    }
+
+    /**
+     * Gets half the width of the band of borderline scores
+     * @return band The band
+     */
+    public double getBand(){
+        return band;
+    }
+}
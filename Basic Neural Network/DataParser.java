@@ -1,23 +1,31 @@
 /**
  * An object that parses data into Input and Output pairs
- * Note on format: First line is first input, second line is first output, 
+ * Note on format: First line is first input, second line is first output,
  * third line is second input, fourth line is second output, etc.
+ * The file is read in a single streaming pass: a NumberLineReader parses
+ * values straight from the bytes into primitive rows, the minimum and maximum of every
+ * column are tracked as the rows arrive, and the rows are then normalized
+ * in place.
  * @author Lou Brand
  * @author Matthew Dickinson
  */
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class DataParser{
     private ArrayList<Input> inputs;
     private ArrayList<Output> outputs;
-    private ArrayList<Double> maximaIn, minimaIn, maximaOut, minimaOut;
+    private double[] inputValues, outputValues;     // One row of NUM_IN (NUM_OUT) values per individual
+    private double[] maximaIn, minimaIn, maximaOut, minimaOut;
     private ArrayList<IOTuple> IOs;
+    private int numRows;
     private int NUM_OUT;
     private int NUM_IN;
     private final String csvFile;
-	    
+    private static final byte DELIMITER = '\t'; // Can change to any delimiter based on the dataset
+
     /**
      * Main method parses a text file (dataset) into a list of Input/Output
      * Tuple objects
@@ -35,164 +43,204 @@ public class DataParser{
             System.out.println();
 	    }
     }
-    
+
 	/**
 	 * Constructor begins the parsing process
 	 */
     public DataParser(String csv){
+        this(csv, true);
+    }
+
+    /**
+     * Parses the CSV and, if asked, writes every file made from it
+     * @param csv The dataset file
+     * @param writeFiles Whether to write inputMaxMin.txt, pybelSmiles.ser
+     * and pybelData.bin
+     */
+    private DataParser(String csv, boolean writeFiles){
         csvFile = csv;
         parse();
-        createIOs();
-        serializeIOs();
+        if (writeFiles){
+            writeInputMaxMin(); //Write the maximum and minimum input values for each IOTuple
+            createIOs();
+            serializeIOs();
+            writeDataset();
+        }
     }
-	
+
     /**
-     * Parses the CSV and stores it in Input and Output objects
+     * Parses a CSV into a normalized Dataset without writing any files
+     * @param csv The dataset file
+     * @return The parsed Dataset
+     */
+    public static Dataset read(String csv){
+        return new DataParser(csv, false).getDataset();
+    }
+
+    /**
+     * Parses the CSV into rows of inputs and outputs, finds the maximum and
+     * minimum of each column along the way, and normalizes every row
     */
     public void parse(){
-    	inputs = new ArrayList<>();
-        outputs = new ArrayList<>();
-        boolean initial = true;
-	    BufferedReader br = null;
-	    String lineIn;
-        String lineOut;
-	    String delimiter = "\t"; // Can change to any delimiter based on the dataset
+        numRows = 0;
+        NUM_IN = -1;
+        NUM_OUT = -1;
+        inputValues = new double[1024];
+        outputValues = new double[1024];
+        NumberLineReader reader = null;
+        int lengthIn;
+        int lengthOut;
 		try{
-            br = new BufferedReader(new FileReader(csvFile));
+            reader = new NumberLineReader(new FileInputStream(csvFile), DELIMITER);
 			
-            while ((lineIn = br.readLine()) != null){
-				String[] individualDataIn = lineIn.split(delimiter);
+            while ((lengthIn = reader.readLine()) != -1){
+                checkNotBlank(lengthIn, reader);
+                addInputs(reader.getValues(), lengthIn);
                 // Conditional block to ensure # input lines = # output lines
-                if ((lineOut = br.readLine()) == null){
-                    throw new IllegalArgumentException("Different number of input and output lines");                                    
-                }
-                else {
-                    String[] individualDataOut = lineOut.split(delimiter);
-                    addIndividual(individualDataIn,individualDataOut);
-                    if (initial){
-                        NUM_IN = individualDataIn.length;
-                        NUM_OUT = individualDataOut.length;
-						initial = false;
-					}
-                    if (individualDataIn.length != NUM_IN || individualDataOut.length != NUM_OUT){
-                        throw new IllegalArgumentException("Dataset is not uniform!");
-                    }
+                if ((lengthOut = reader.readLine()) == -1){
+                    throw new IllegalArgumentException("Different number of input and output lines");
                 }
+                checkNotBlank(lengthOut, reader);
+                addOutputs(reader.getValues(), lengthOut);
 			}
         } catch (FileNotFoundException e){e.printStackTrace();}
         catch (IOException e){e.printStackTrace();}
         finally{
-            if (br != null){
+            if (reader != null){
                 try{
-                    br.close();
+                    reader.close();
                 } catch (IOException e) {e.printStackTrace();}
             }
         }
-	    getMinMax();	
-	    normalizeIndividuals();
+        inputValues = Arrays.copyOf(inputValues, numRows * Math.max(NUM_IN, 0));
+        outputValues = Arrays.copyOf(outputValues, numRows * Math.max(NUM_OUT, 0));
+        normalizeIndividuals();
     }
-	
+
     /**
-     * Helper method that parses an array of data and stores it in an Input
+     * Makes sure a line of the dataset holds values
+     * @param length Number of values on the line
+     * @param reader The reader that read the line
      */
-    private void addIndividual(String[] dataIn, String[] dataOut){
-        ArrayList<Double> currentOutputs = new ArrayList<>();
-        ArrayList<Double> currentInputs = new ArrayList<>();
-              
-        for (String dataIn1 : dataIn) {
-            currentInputs.add(Double.parseDouble(dataIn1));
+    private static void checkNotBlank(int length, NumberLineReader reader){
+        if (length == 0){
+            throw new IllegalArgumentException("Blank line " + reader.getLineNumber());
         }
-            
-        Input newInput = new Input(currentInputs);
-		
-        for (String dataOut1 : dataOut){
-            currentOutputs.add(Double.parseDouble(dataOut1));
+    }
+
+    /**
+     * Stores the input line of a new individual and updates the maximum and
+     * minimum of each input
+     * @param line The parsed input values
+     * @param length Number of values on the line
+     */
+    private void addInputs(double[] line, int length){
+        if (numRows == 0){
+            NUM_IN = length;
+            maximaIn = Arrays.copyOf(line, length);
+            minimaIn = Arrays.copyOf(line, length);
+        } else if (length != NUM_IN){
+            throw new IllegalArgumentException("Dataset is not uniform!");
         }
-	
-        Output newOutput = new Output(currentOutputs);
-           
-        inputs.add(newInput);
-        outputs.add(newOutput);
-	
+        int start = numRows * NUM_IN;
+        if (start + NUM_IN > inputValues.length){
+            inputValues = Arrays.copyOf(inputValues, Math.max(2 * inputValues.length, start + NUM_IN));
+        }
+        System.arraycopy(line, 0, inputValues, start, NUM_IN);
+        trackMinMax(line, NUM_IN, minimaIn, maximaIn);
     }
 
-    
     /**
-     * Normalizes all Input and Outputs to values between [0, 1]
+     * Stores the output line of the individual whose inputs were just read
+     * and updates the maximum and minimum of each output
+     * @param line The parsed output values
+     * @param length Number of values on the line
      */
-    private void normalizeIndividuals(){
-        for (int i = 0; i < inputs.size(); i++){
-            for (int j = 0; j < NUM_IN; j++){
-                Input currentInput = inputs.get(i);
-                currentInput.normalizeValue(minimaIn.get(j), maximaIn.get(j), j);
+    private void addOutputs(double[] line, int length){
+        if (numRows == 0){
+            NUM_OUT = length;
+            maximaOut = Arrays.copyOf(line, length);
+            minimaOut = Arrays.copyOf(line, length);
+        } else if (length != NUM_OUT){
+            throw new IllegalArgumentException("Dataset is not uniform!");
+        }
+        int start = numRows * NUM_OUT;
+        if (start + NUM_OUT > outputValues.length){
+            outputValues = Arrays.copyOf(outputValues, Math.max(2 * outputValues.length, start + NUM_OUT));
+        }
+        System.arraycopy(line, 0, outputValues, start, NUM_OUT);
+        trackMinMax(line, NUM_OUT, minimaOut, maximaOut);
+        numRows++;
+    }
+
+    /**
+     * Updates the running maximum and minimum of each column with a new row
+     * @param row The new row
+     * @param length Number of columns
+     * @param minima The minimum of each column so far
+     * @param maxima The maximum of each column so far
+     */
+    private static void trackMinMax(double[] row, int length, double[] minima, double[] maxima){
+        for (int j = 0; j < length; j++){
+            double temp = row[j];
+            if (temp > maxima[j]){
+                maxima[j] = temp;
             }
-            for (int k = 0; k < NUM_OUT; k++){
-                Output currentOutput = outputs.get(i);
-		        currentOutput.normalizeValue(minimaOut.get(k), maximaOut.get(k), k);
+            else if (temp < minima[j]){
+                minima[j] = temp;
             }
+        }
+    }
+
+    /**
+     * Normalizes all Input and Outputs to values between [0, 1], in place
+     */
+    private void normalizeIndividuals(){
+        for (int i = 0; i < numRows; i++){
+            normalizeRow(inputValues, i * NUM_IN, NUM_IN, minimaIn, maximaIn);
+            normalizeRow(outputValues, i * NUM_OUT, NUM_OUT, minimaOut, maximaOut);
 	    }
     }
-    
+
     /**
-     * Finds the maximum and minimum of each Input and Output of the dataset
+     * Normalizes one row of values in place
+     * @param values The rows
+     * @param start Index of the first value of the row
+     * @param length Number of values in the row
+     * @param minima Minimum of each column
+     * @param maxima Maximum of each column
      */
-    public void getMinMax(){
-        /* 
-         * Initialize all the minima and maxima arrays to the values held in
-         * the first input and output objects. This eliminates the problem of
-         * the first comparison (comparing to a null object or an object full
-         * of zeroes)
-         */
-        maximaIn = new ArrayList<>(inputs.get(0).getInputs());
-        maximaOut = new ArrayList<>(outputs.get(0).getOutputs());
-        minimaIn = new ArrayList<>(inputs.get(0).getInputs());
-        minimaOut = new ArrayList<>(outputs.get(0).getOutputs());
-        
-        double temp;
-        
-        // Loop through the inputs and outputs starting at the second position
-        // If inputs.size() != outputs.size(), the program would have thrown an error in parse
-        for(int i = 1; i < inputs.size();i++){
-          
-            // Check each input position
-            for(int j = 0; j < NUM_IN; j++){
-                // Temp holds the current input variable of the current input object being tested
-                temp = inputs.get(i).getInputs().get(j);
-                if(temp > maximaIn.get(j)){
-                    maximaIn.set(j, temp);
-                }
-                else if (temp < minimaIn.get(j)){
-                    minimaIn.set(j,temp);
-                }
-            }
-            
-            // Check each output position
-            for(int k = 0; k < NUM_OUT; k++){
-                // Temp holds the current output variable of the current output object being tested                
-                temp = outputs.get(i).getOutputs().get(k);
-                if(temp > maximaOut.get(k)){
-                    maximaOut.set(k, temp);
-                }
-                else if (temp < minimaOut.get(k)){
-                    minimaOut.set(k,temp);
-                }
-            }
+    private static void normalizeRow(double[] values, int start, int length, double[] minima, double[] maxima){
+        for (int j = 0; j < length; j++){
+            double range = maxima[j] - minima[j];
+            values[start + j] = (values[start + j] - minima[j])/range;
         }
-        
-        writeInputMaxMin(); //Write the maximum and minimum input values for each IOTuple
     }
 
     /**
-    * Sets the IOTuple array
+    * Sets the Input, Output and IOTuple arrays from the normalized rows
     */
     public void createIOs(){
+        inputs = new ArrayList<>();
+        outputs = new ArrayList<>();
 	IOs = new ArrayList<>();
-        for (int i = 0; i < inputs.size(); i++){
-            IOTuple ioCurrent = new IOTuple(inputs.get(i), outputs.get(i));
-            IOs.add(ioCurrent);
+        for (int i = 0; i < numRows; i++){
+            ArrayList<Double> currentInputs = new ArrayList<>();
+            ArrayList<Double> currentOutputs = new ArrayList<>();
+            for (int j = 0; j < NUM_IN; j++){
+                currentInputs.add(inputValues[i * NUM_IN + j]);
+            }
+            for (int k = 0; k < NUM_OUT; k++){
+                currentOutputs.add(outputValues[i * NUM_OUT + k]);
+            }
+            Input newInput = new Input(currentInputs);
+            Output newOutput = new Output(currentOutputs);
+            inputs.add(newInput);
+            outputs.add(newOutput);
+            IOs.add(new IOTuple(newInput, newOutput));
         }
     }
-    
+
     /**
     * Serializes the IOTuple array
     */
@@ -206,8 +254,29 @@ public class DataParser{
             fileOut.close();
             System.out.println("Serialized data is saved in " + serial);
         }catch(IOException i){i.printStackTrace();}
-    }   
-    
+    }
+
+    /**
+    * Writes the normalized Inputs and Outputs, along with the max and min
+    * of each, to a binary Dataset file
+    */
+    public void writeDataset(){
+        try{
+            String filename = "pybelData.bin";
+            getDataset().write(filename);
+            System.out.println("Dataset is saved in " + filename);
+        }catch(IOException i){i.printStackTrace();}
+    }
+
+    /**
+    * Gets the normalized rows as a Dataset, without creating any IOTuples
+    * @return The parsed Dataset
+    */
+    public Dataset getDataset(){
+        return new Dataset(numRows, NUM_IN, NUM_OUT, inputValues, outputValues,
+                           minimaIn, maximaIn, minimaOut, maximaOut);
+    }
+
     /**
      * Writes the max and min for each input in our collection of IOTuples
      * to a text file
@@ -217,23 +286,23 @@ public class DataParser{
             String filename = "inputMaxMin.txt";
 			File file = new File(filename);
 			file.createNewFile();
- 
+
 			FileWriter fw = new FileWriter(file.getAbsoluteFile());
 			BufferedWriter bw = new BufferedWriter(fw);
-            
-            for (int i = 0; i < minimaIn.size(); i++){
-                String content = minimaIn.get(i) + " " + maximaIn.get(i);
+
+            for (int i = 0; i < minimaIn.length; i++){
+                String content = minimaIn[i] + " " + maximaIn[i];
                 bw.write(content);
                 bw.newLine();
             }
 			bw.close();
- 
+
 			System.out.println("Input max and min is saved in: " + filename);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
     }
-    
+
     /**
     * Gets the list of Inputs to be used in the NeuralNetwork
     * @return inputs The Inputs for the NeuralNetwork
@@ -241,7 +310,7 @@ public class DataParser{
     public ArrayList<Input> getInputs(){
 		return inputs;
 	}
-	
+
     /**
      * Gets the list of Outputs to be used in the NeuralNetwork
      * @return outputs The Outputs for the NeuralNetwork
@@ -249,7 +318,7 @@ public class DataParser{
     public ArrayList<Output> getOutputs(){
         return outputs;
     }
-    
+
     /**
      * Gets the list of IOTuple pairs to be used in the NeuralNetwork
      * @return IOs The IOTuple pairs
@@ -0,0 +1,284 @@
+/**
+ * Distills the collection of pre-trained neural networks into a single
+ * student NeuralNetwork, so bulk screening costs one forward pass per
+ * compound instead of one per voter. The student learns the collection's
+ * fraction of yes votes (a soft target) rather than the 0/1 labels, on the
+ * compounds of our dataset, on mixes of two of them, and optionally on
+ * unlabeled compounds. A slice of the dataset is held out, and the
+ * student's agreement with the collection is measured on it.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DistillPredictor{
+    public static final String STUDENT_FILE = "BBBStudent.model";
+    private static final int[] STUDENT_LAYERS = {32};  //Neurons in each of the student's hidden layers
+    private static final double HOLD_OUT = .1;          //Fraction of the dataset held out to measure agreement
+    private static final int AUGMENT = 1;               //Mixed compounds made per dataset compound
+    private static final int EPOCHS = 500;              //The most epochs the student trains
+    private static final int PATIENCE = 20;             //Epochs the student keeps training without its validation loss improving
+    private static final double MIN_DELTA = 1e-5;       //Smallest drop in validation loss that counts as improving
+    private static final double VALIDATION = .1;        //Fraction of the soft targets held out for early stopping
+    private static final int REPEATS = 100;             //Passes over the held out compounds when timing
+    private static final long SEED = 42;
+    private Predictor teacher;
+    private NeuralNetwork student;
+    private Random rand = new Random(SEED);
+    private ArrayList<double[]> queries = new ArrayList<double[]>();    //Normalized compounds the student learns from
+    private int numLabeled;                             //The first numLabeled queries are dataset compounds
+
+    /**
+     * Distills BBBPredictor.model into BBBStudent.model
+     * @param args Optional file of unlabeled compounds (one raw input line
+     * per compound, like a BatchScreen library)
+     */
+    public static void main(String[] args){
+        try{
+            Predictor teacher = Predictor.read(Predictor.MODEL_FILE);
+            teacher.setFused(true);
+            Dataset data = Dataset.read("pybelData.bin");
+
+            // Shuffle the rows and hold out the first few
+            Random shuffle = new Random(SEED);
+            int[] rows = new int[data.size()];
+            for (int r = 0; r < rows.length; r++){
+                rows[r] = r;
+            }
+            for (int r = rows.length - 1; r > 0; r--){
+                int other = shuffle.nextInt(r + 1);
+                int swap = rows[r];
+                rows[r] = rows[other];
+                rows[other] = swap;
+            }
+            int numHeldOut = (int)(HOLD_OUT * rows.length);
+            int[] heldOut = Arrays.copyOfRange(rows, 0, numHeldOut);
+            int[] training = Arrays.copyOfRange(rows, numHeldOut, rows.length);
+
+            DistillPredictor myDistiller = new DistillPredictor(teacher);
+            myDistiller.addCompounds(data, training);
+            myDistiller.augment(AUGMENT);
+            if (args.length > 0){
+                myDistiller.addUnlabeled(args[0]);
+            }
+            myDistiller.train(STUDENT_LAYERS);
+            myDistiller.report(data, heldOut);
+            myDistiller.save(STUDENT_FILE);
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Creates a DistillPredictor for a collection of neural networks
+     * @param predictor The collection to distill (the teacher)
+     */
+    public DistillPredictor(Predictor predictor){
+        teacher = predictor;
+    }
+
+    /**
+     * Adds compounds of a dataset to learn from
+     * @param data The normalized compounds
+     * @param rows The rows to add
+     */
+    public void addCompounds(Dataset data, int[] rows){
+        int numIn = teacher.numInputs();
+        if (data.numInputs() != numIn){
+            throw new IllegalArgumentException("Expected " + numIn + " inputs but the dataset has " + data.numInputs());
+        }
+        for (int row : rows){
+            double[] query = new double[numIn];
+            System.arraycopy(data.getInputs(), row * numIn, query, 0, numIn);
+            queries.add(query);
+        }
+        numLabeled = queries.size();
+    }
+
+    /**
+     * Adds mixes of two random dataset compounds, somewhere on the line
+     * between them, so the student also learns the collection's answer in
+     * between the compounds it has seen
+     * @param perCompound Mixed compounds made per dataset compound
+     */
+    public void augment(int perCompound){
+        int numIn = teacher.numInputs();
+        int numMixed = perCompound * numLabeled;
+        for (int m = 0; m < numMixed; m++){
+            double[] a = queries.get(rand.nextInt(numLabeled));
+            double[] b = queries.get(rand.nextInt(numLabeled));
+            double mix = rand.nextDouble();
+            double[] query = new double[numIn];
+            for (int i = 0; i < numIn; i++){
+                query[i] = mix * a[i] + (1.0 - mix) * b[i];
+            }
+            queries.add(query);
+        }
+        System.out.println("Made " + numMixed + " mixed compounds");
+    }
+
+    /**
+     * Adds unlabeled compounds to learn from. Compounds too far outside the
+     * range of our dataset are skipped.
+     * @param unlabeledFile One line of raw input parameters per compound
+     */
+    public void addUnlabeled(String unlabeledFile) throws IOException{
+        int numIn = teacher.numInputs();
+        int added = 0;
+        int skipped = 0;
+        try (NumberLineReader reader = new NumberLineReader(new FileInputStream(unlabeledFile), (byte)'\t')){
+            double[] raw = new double[numIn];
+            int length;
+            while ((length = reader.readLine()) != -1){
+                if (length == 0){
+                    continue; //Skip blank lines
+                }
+                if (length != numIn){
+                    throw new IllegalArgumentException("Expected " + numIn + " inputs on line " + reader.getLineNumber() + " but got " + length);
+                }
+                System.arraycopy(reader.getValues(), 0, raw, 0, numIn);
+                double[] query = teacher.normalize(raw);
+                boolean inRange = true;
+                for (double value : query){
+                    inRange &= value <= 1.0 && value >= -1.0;
+                }
+                if (inRange){
+                    queries.add(query);
+                    added++;
+                } else {
+                    skipped++;
+                }
+            }
+        }
+        System.out.println("Read " + added + " unlabeled compounds from " + unlabeledFile + " (" + skipped + " outside the range of our dataset)");
+    }
+
+    /**
+     * Labels every compound with the collection's fraction of yes votes and
+     * trains the student on them until its validation loss stops improving
+     * @param hiddenSizes Neurons in each of the student's hidden layers
+     * @return The student's loss and accuracy after each epoch
+     */
+    public EarlyStopping.History train(int[] hiddenSizes){
+        int numIn = teacher.numInputs();
+        int rows = queries.size();
+        double[] inputs = new double[rows * numIn];
+        double[] targets = new double[rows];
+        int[] order = new int[rows];
+        for (int r = 0; r < rows; r++){
+            order[r] = r;
+        }
+        for (int r = rows - 1; r > 0; r--){
+            int other = rand.nextInt(r + 1);
+            int swap = order[r];
+            order[r] = order[other];
+            order[other] = swap;
+        }
+        for (int r = 0; r < rows; r++){
+            double[] query = queries.get(order[r]);
+            System.arraycopy(query, 0, inputs, r * numIn, numIn);
+            targets[r] = teacher.vote(query).getYesFraction();
+        }
+
+        int numValidation = Math.max(1, (int)(rows * VALIDATION));
+        int numTraining = rows - numValidation;
+        Dataset trainingSet = soften(inputs, targets, 0, numTraining);
+        Dataset validationSet = soften(inputs, targets, numTraining, numValidation);
+
+        long startTime = System.nanoTime();
+        student = new NeuralNetwork(hiddenSizes);
+        student.initialize(trainingSet, SEED);
+        EarlyStopping.History history = new EarlyStopping(PATIENCE, MIN_DELTA, VALIDATION)
+                .train(student, trainingSet, validationSet, EPOCHS);
+        System.out.println("Trained the student on " + numTraining + " soft targets for " + history.getEpochsTrained()
+                           + " epochs (best " + history.getBestEpoch() + ") in " + (System.nanoTime() - startTime) / 1e9 + " seconds");
+        return history;
+    }
+
+    /**
+     * Packs a run of soft targets into a Dataset
+     * @param inputs Every compound's normalized inputs
+     * @param targets Every compound's fraction of yes votes
+     * @param start The first compound of the run
+     * @param rows Number of compounds in the run
+     * @return The Dataset
+     */
+    private Dataset soften(double[] inputs, double[] targets, int start, int rows){
+        int numIn = teacher.numInputs();
+        double[] runInputs = Arrays.copyOfRange(inputs, start * numIn, (start + rows) * numIn);
+        double[] runTargets = Arrays.copyOfRange(targets, start, start + rows);
+        return new Dataset(rows, numIn, 1, runInputs, runTargets, teacher.getInputMinima(), teacher.getInputMaxima(),
+                           new double[]{0.0}, new double[]{1.0});
+    }
+
+    /**
+     * Compares the student with the collection on held out compounds: how
+     * often they agree and how long each takes. The rows are held out
+     * from the student only; the collection was trained on the whole
+     * dataset, so accuracy against the labels would not be a fair
+     * comparison and isn't reported.
+     * @param data The normalized compounds
+     * @param rows The held out rows
+     */
+    public void report(Dataset data, int[] rows){
+        int numIn = teacher.numInputs();
+        double[] activations = new double[student.getActivationSize()];
+        double[] query = new double[numIn];
+        int agree = 0;
+
+        for (int row : rows){
+            System.arraycopy(data.getInputs(), row * numIn, query, 0, numIn);
+            boolean teacherYes = teacher.vote(query).passes();
+            boolean studentYes = student.calculate(query, activations) >= .5;
+            if (teacherYes == studentYes){
+                agree++;
+            }
+        }
+        System.out.println("Student agrees with the collection on " + agree + " out of " + rows.length + " held out compounds");
+
+        long startTime = System.nanoTime();
+        double sink = 0.0;
+        for (int k = 0; k < REPEATS; k++){
+            for (int row : rows){
+                System.arraycopy(data.getInputs(), row * numIn, query, 0, numIn);
+                sink += teacher.vote(query).getYes();
+            }
+        }
+        long teacherTime = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        for (int k = 0; k < REPEATS; k++){
+            for (int row : rows){
+                System.arraycopy(data.getInputs(), row * numIn, query, 0, numIn);
+                sink += student.calculate(query, activations);
+            }
+        }
+        long studentTime = System.nanoTime() - startTime;
+        System.out.println("Per compound: collection " + teacherTime / (REPEATS * rows.length) + " ns, student "
+                           + studentTime / (REPEATS * rows.length) + " ns");
+        if (sink == 42.0){
+            System.out.println(); //Never true in practice, keeps the timed work from being optimized away
+        }
+    }
+
+    /**
+     * Saves the student as a model file with a single voter, which the
+     * Predictor, PredictionServer and BatchScreen can load like any other
+     * @param modelFile Where the student is written
+     */
+    public void save(String modelFile) throws IOException{
+        ArrayList<NeuralNetwork> voters = new ArrayList<NeuralNetwork>();
+        voters.add(student);
+        new Predictor(voters, teacher.getInputMinima(), teacher.getInputMaxima()).write(modelFile);
+        System.out.println("Student is saved in " + modelFile);
+    }
+
+    /**
+     * Gets the trained student
+     * @return student The student NeuralNetwork
+     */
+    public NeuralNetwork getStudent(){
+        return student;
+    }
+}
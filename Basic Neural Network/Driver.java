@@ -10,35 +10,44 @@ import java.io.*;
 
 public class Driver{
     ArrayList<IOTuple> inputOutputTuples;
-    private final int EPOCHS = 200; //Determine the number of epochs to train Neural Network
+    private MappedDataset mappedData; //The same rows, read straight from the file by the fold drivers
+    private double[] inputMin, inputMax; //Range of each input before normalizing
+    private final int EPOCHS = 200; //Determine the most epochs to train Neural Network
+    private final int THREADS = Runtime.getRuntime().availableProcessors(); //Number of voters or folds trained at once
+    private final long SEED = 42; //Determines the starting weights of every voter
+    private final int PATIENCE = 10; //Epochs a voter keeps training without its validation loss improving
+    private final double MIN_DELTA = 1e-4; //Smallest drop in validation loss that counts as improving
+    private final double VALIDATION = .1; //Fraction of each voter's training set held out for validation
+    private final int[] HIDDEN_LAYERS = {}; //Neurons in each hidden layer, e.g. {12, 6}; empty for one layer of half the inputs
     
 	public static void main (String[] args){
-        Driver myDriver = new Driver("pybelSmiles.ser");
+        Driver myDriver = new Driver("pybelData.bin");
         //myDriver.kFoldTest();
         myDriver.surveyTest();
         //myDriver.serializePredictor();
 	}
     
     /**
-     * Reads in the serialized IOTuples 
+     * Reads in the IOTuples from a binary Dataset file, and maps the file
+     * for the KFoldTest and SurveyTest
      */
     public Driver(String ioFilename){
         try{
-            InputStream file = new FileInputStream(ioFilename);
-            InputStream buffer = new BufferedInputStream(file);
-            ObjectInput input = new ObjectInputStream (buffer);
-            inputOutputTuples = (ArrayList<IOTuple>)input.readObject();
+            Dataset myData = Dataset.read(ioFilename);
+            inputOutputTuples = myData.toIOTuples();
+            inputMin = myData.getInputMinima();
+            inputMax = myData.getInputMaxima();
+            mappedData = new MappedDataset(ioFilename);
         }
-        catch(ClassNotFoundException ex){System.out.println("The class wasn't found!");}
         catch(IOException ex){System.out.println("There was an error!");}
     }
     
     /**
-     * Create a KFoldTest object and performs a K-Fold Test with IOTuples
-     *  read in
+     * Create a KFoldTest object and performs a K-Fold Test with the rows
+     *  mapped in
      */
     private void kFoldTest(){
-        KFoldTest myTest = new KFoldTest(inputOutputTuples, EPOCHS);
+        KFoldTest myTest = new KFoldTest(mappedData, EPOCHS, THREADS);
     }
     
     /**
@@ -46,7 +55,7 @@ public class Driver{
      * with a majority vote
      */
     private void surveyTest(){
-        SurveyTest myTest = new SurveyTest(inputOutputTuples, EPOCHS);
+        SurveyTest myTest = new SurveyTest(mappedData, EPOCHS, createTrainer());
     }
     
     /**
@@ -54,7 +63,19 @@ public class Driver{
      * application
      */
     private void serializePredictor(){
-        SerializePredictor myPredictor = new SerializePredictor(inputOutputTuples, EPOCHS);
+        SerializePredictor myPredictor = new SerializePredictor(inputOutputTuples, inputMin, inputMax, EPOCHS, createTrainer());
+    }
+
+    /**
+     * Creates the EnsembleTrainer for the collection of voters. Each voter
+     * has the HIDDEN_LAYERS and stops training once its validation loss
+     * stops improving.
+     * @return The EnsembleTrainer
+     */
+    private EnsembleTrainer createTrainer(){
+        EnsembleTrainer myTrainer = new EnsembleTrainer(THREADS, SEED, new EarlyStopping(PATIENCE, MIN_DELTA, VALIDATION));
+        myTrainer.setHiddenLayers(HIDDEN_LAYERS);
+        return myTrainer;
     }
 }
 
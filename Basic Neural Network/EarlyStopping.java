@@ -0,0 +1,245 @@
+/**
+ * Decides how long a neural network trains. After every epoch the
+ * network is scored on a validation set that it never trains on. Training
+ * stops once the validation loss hasn't improved by at least minDelta for
+ * patience epochs in a row (or the maximum number of epochs is reached),
+ * and the weights from the best epoch are put back.
+ *
+ * The loss is the mean of 1/2 * (d - z) ^ 2 over the validation set (the
+ * performance function of backProp), and a validation compound counts as
+ * right when the calculated output is within .5 of the expected output.
+ * An EarlyStopping only holds its settings, so one can be shared by
+ * voters training on different threads.
+ * @author Lou Brand
+ */
+
+public class EarlyStopping{
+    private int patience;
+    private double minDelta;
+    private double validationFraction;
+
+    /**
+     * Creates an EarlyStopping rule
+     * @param patienceEpochs Epochs without improvement before training stops
+     * @param minimumDelta How much the validation loss must drop to count as
+     * an improvement
+     * @param validation Fraction of each training set held out for validation
+     */
+    public EarlyStopping(int patienceEpochs, double minimumDelta, double validation){
+        if (patienceEpochs < 1){
+            throw new IllegalArgumentException("The patience (" + patienceEpochs + ") must be at least 1.");
+        }
+        if (minimumDelta < 0.0){
+            throw new IllegalArgumentException("The minimum delta (" + minimumDelta + ") can't be negative.");
+        }
+        if (!(validation > 0.0 && validation < 1.0)){
+            throw new IllegalArgumentException("The validation fraction (" + validation + ") must be between 0 and 1.");
+        }
+        patience = patienceEpochs;
+        minDelta = minimumDelta;
+        validationFraction = validation;
+    }
+
+    /**
+     * Gets the fraction of each training set held out for validation
+     * @return validationFraction The validation fraction
+     */
+    public double getValidationFraction(){
+        return validationFraction;
+    }
+
+    /**
+     * Trains a neural network until the validation loss stops improving,
+     * then restores the weights of the best epoch
+     * @param currentNN The initialized neural network
+     * @param trainingSet The rows it trains on
+     * @param validationSet The rows it is scored on after every epoch
+     * @param maxEpochs The most epochs to train
+     * @return history The loss and accuracy of every epoch trained
+     */
+    public History train(NeuralNetwork currentNN, Dataset trainingSet, Dataset validationSet, int maxEpochs){
+        if (validationSet.size() < 1){
+            throw new IllegalArgumentException("There must be at least one validation row!");
+        }
+        double[] input = new double[validationSet.numInputs()];
+        double[] activations = new double[currentNN.getActivationSize()];
+        return train(currentNN, maxEpochs, (history, epoch) -> {
+            currentNN.train(trainingSet, 1);
+            score(currentNN, validationSet, input, activations, history, epoch);
+        });
+    }
+
+    /**
+     * Trains a neural network on rows of a MappedDataset until the
+     * validation loss stops improving, then restores the weights of the
+     * best epoch. See train(NeuralNetwork, Dataset, Dataset, int).
+     * @param currentNN The initialized neural network
+     * @param trainingSet The rows it trains on
+     * @param validationSet The rows it is scored on after every epoch
+     * @param maxEpochs The most epochs to train
+     * @return history The loss and accuracy of every epoch trained
+     */
+    public History train(NeuralNetwork currentNN, RowSet trainingSet, RowSet validationSet, int maxEpochs){
+        if (validationSet.size() < 1){
+            throw new IllegalArgumentException("There must be at least one validation row!");
+        }
+        double[] input = new double[validationSet.getData().numInputs()];
+        double[] activations = new double[currentNN.getActivationSize()];
+        return train(currentNN, maxEpochs, (history, epoch) -> {
+            currentNN.train(trainingSet, 1);
+            score(currentNN, validationSet, input, activations, history, epoch);
+        });
+    }
+
+    /**
+     * One epoch of training followed by scoring on the validation set
+     */
+    private interface Epoch{
+        void run(History history, int epoch);
+    }
+
+    /**
+     * Runs epochs until the validation loss stops improving, then restores
+     * the weights of the best epoch
+     * @param currentNN The initialized neural network
+     * @param maxEpochs The most epochs to train
+     * @param step Trains one epoch and records its validation loss
+     * @return history The loss and accuracy of every epoch trained
+     */
+    private History train(NeuralNetwork currentNN, int maxEpochs, Epoch step){
+        History history = new History(maxEpochs);
+        double[] bestWeights = new double[currentNN.getWeightCount()];
+        double bestLoss = Double.POSITIVE_INFINITY;
+        int waiting = 0;
+
+        for (int epoch = 0; epoch < maxEpochs && waiting < patience; epoch++){
+            step.run(history, epoch);
+            history.epochsTrained = epoch + 1;
+
+            if (history.loss[epoch] < bestLoss - minDelta){
+                bestLoss = history.loss[epoch];
+                history.bestEpoch = epoch;
+                currentNN.copyWeights(bestWeights);
+                waiting = 0;
+            } else {
+                waiting++;
+            }
+        }
+
+        if (history.bestEpoch >= 0){
+            currentNN.setWeights(bestWeights);
+        }
+        return history;
+    }
+
+    /**
+     * Scores a neural network on the validation set
+     * @param currentNN The neural network
+     * @param validationSet The rows it is scored on
+     * @param input A buffer for one row of inputs
+     * @param activations A buffer for the hidden and output values
+     * @param history Where the loss and accuracy are recorded
+     * @param epoch The epoch that was just trained
+     */
+    private void score(NeuralNetwork currentNN, Dataset validationSet, double[] input, double[] activations,
+                       History history, int epoch){
+        double[] inputs = validationSet.getInputs();
+        double[] outputs = validationSet.getOutputs();
+        int numIn = validationSet.numInputs();
+        int numOut = validationSet.numOutputs();
+        double totalLoss = 0.0;
+        int numRight = 0;
+
+        for (int r = 0; r < validationSet.size(); r++){
+            System.arraycopy(inputs, r * numIn, input, 0, numIn);
+            double z = currentNN.calculate(input, activations);
+            double d = outputs[r * numOut];
+            totalLoss += .5 * (d - z) * (d - z);
+            if (Math.abs(d - z) < .5){
+                numRight++;
+            }
+        }
+        history.loss[epoch] = totalLoss / validationSet.size();
+        history.accuracy[epoch] = (double)numRight / validationSet.size();
+    }
+
+    /**
+     * Scores a neural network on rows of a MappedDataset
+     * @param currentNN The neural network
+     * @param validationSet The rows it is scored on
+     * @param input A buffer for one row of inputs
+     * @param activations A buffer for the hidden and output values
+     * @param history Where the loss and accuracy are recorded
+     * @param epoch The epoch that was just trained
+     */
+    private void score(NeuralNetwork currentNN, RowSet validationSet, double[] input, double[] activations,
+                       History history, int epoch){
+        MappedDataset data = validationSet.getData();
+        double totalLoss = 0.0;
+        int numRight = 0;
+
+        for (int r = 0; r < validationSet.size(); r++){
+            int row = validationSet.get(r);
+            for (int i = 0; i < input.length; i++){
+                input[i] = data.getInput(row, i);
+            }
+            double z = currentNN.calculate(input, activations);
+            double d = data.getOutput(row, 0);
+            totalLoss += .5 * (d - z) * (d - z);
+            if (Math.abs(d - z) < .5){
+                numRight++;
+            }
+        }
+        history.loss[epoch] = totalLoss / validationSet.size();
+        history.accuracy[epoch] = (double)numRight / validationSet.size();
+    }
+
+    /**
+     * The validation loss and accuracy of every epoch a neural network trained
+     */
+    public static class History{
+        private double[] loss;
+        private double[] accuracy;
+        private int epochsTrained = 0;
+        private int bestEpoch = -1;
+
+        private History(int maxEpochs){
+            loss = new double[maxEpochs];
+            accuracy = new double[maxEpochs];
+        }
+
+        /**
+         * Gets the number of epochs trained before stopping
+         * @return epochsTrained The number of epochs
+         */
+        public int getEpochsTrained(){
+            return epochsTrained;
+        }
+
+        /**
+         * Gets the epoch whose weights were kept, counting from 0
+         * @return bestEpoch The best epoch
+         */
+        public int getBestEpoch(){
+            return bestEpoch;
+        }
+
+        /**
+         * Gets the validation loss after an epoch
+         * @param epoch The epoch, counting from 0
+         * @return The mean loss over the validation set
+         */
+        public double getLoss(int epoch){
+            return loss[epoch];
+        }
+
+        /**
+         * Gets the validation accuracy after an epoch
+         * @param epoch The epoch, counting from 0
+         * @return The fraction of the validation set predicted right
+         */
+        public double getAccuracy(int epoch){
+            return accuracy[epoch];
+        }
+    }
+}
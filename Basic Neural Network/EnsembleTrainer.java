@@ -0,0 +1,259 @@
+/**
+ * Trains the collection of neural networks used for voting. Every voter
+ * has its own weights and its own training set, so each one is trained
+ * as a separate task on a pool of worker threads. With an EarlyStopping
+ * rule each voter holds out a slice of its training set for validation
+ * and stops once it has converged instead of training every epoch.
+ * @author Lou Brand
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class EnsembleTrainer{
+    private int numThreads;
+    private Random seeds;
+    private EarlyStopping myStopping;   //Null when every voter trains every epoch
+    private int[] hiddenLayers = {};    //Empty for the default single hidden layer
+
+    /**
+     * Creates an EnsembleTrainer
+     * @param threads Number of worker threads used to train voters
+     * @param seed Seed that determines the starting weights of every voter
+     */
+    public EnsembleTrainer(int threads, long seed){
+        if (threads < 1){
+            throw new IllegalArgumentException("The number of threads (" + threads + ") must be at least 1.");
+        }
+        numThreads = threads;
+        seeds = new Random(seed);
+    }
+
+    /**
+     * Creates an EnsembleTrainer whose voters stop training early
+     * @param threads Number of worker threads used to train voters
+     * @param seed Seed that determines the starting weights of every voter
+     * @param stopping Decides when each voter has trained enough
+     */
+    public EnsembleTrainer(int threads, long seed, EarlyStopping stopping){
+        this(threads, seed);
+        myStopping = stopping;
+    }
+
+    /**
+     * Chooses the hidden layers of every voter
+     * @param sizes The number of Neurons in each hidden layer, or none for
+     * the default single hidden layer
+     */
+    public void setHiddenLayers(int... sizes){
+        hiddenLayers = sizes.clone();
+    }
+
+    /**
+     * Creates the collection of neural networks to be used for voting
+     * @param trainingData The data every voter is trained with
+     * @param numVoters Number of neural networks in the collection
+     * @param epochs Number of training cycles for each neural network (the
+     * most cycles when stopping early)
+     * @return voters The trained neural networks, in voter order
+     */
+    public ArrayList<NeuralNetwork> createVoters(List<IOTuple> trainingData, int numVoters, int epochs){
+        return createVoters(numVoters, epochs,
+                            (voter, seed, epochsTrained) -> createVoter(trainingData, voter, numVoters, epochs, seed, epochsTrained));
+    }
+
+    /**
+     * Creates the collection of neural networks to be used for voting from
+     * rows of a MappedDataset. Each voter's training and validation sets
+     * are RowSet views, so no compound is copied. See
+     * createVoters(List, int, int).
+     * @param trainingData The rows every voter is trained with
+     * @param numVoters Number of neural networks in the collection
+     * @param epochs Number of training cycles for each neural network (the
+     * most cycles when stopping early)
+     * @return voters The trained neural networks, in voter order
+     */
+    public ArrayList<NeuralNetwork> createVoters(RowSet trainingData, int numVoters, int epochs){
+        return createVoters(numVoters, epochs,
+                            (voter, seed, epochsTrained) -> createVoter(trainingData, voter, numVoters, epochs, seed, epochsTrained));
+    }
+
+    /**
+     * Trains one voter of the collection
+     */
+    private interface VoterTask{
+        NeuralNetwork train(int voter, long seed, int[] epochsTrained);
+    }
+
+    /**
+     * Trains every voter of the collection on the worker threads
+     * @param numVoters Number of neural networks in the collection
+     * @param epochs The most training cycles for each neural network
+     * @param task Trains a single voter
+     * @return voters The trained neural networks, in voter order
+     */
+    private ArrayList<NeuralNetwork> createVoters(int numVoters, int epochs, VoterTask task){
+        // Seeds are drawn here, not on the workers, so voter i always gets the same seed
+        long[] voterSeeds = new long[numVoters];
+        for (int i = 0; i < numVoters; i++){
+            voterSeeds[i] = seeds.nextLong();
+        }
+
+        int[] epochsTrained = new int[numVoters];   //Each task writes only its own voter's count
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, numVoters));
+        ArrayList<NeuralNetwork> voters = new ArrayList<NeuralNetwork>();
+        try{
+            ArrayList<Future<NeuralNetwork>> trained = new ArrayList<Future<NeuralNetwork>>();
+            for (int i = 0; i < numVoters; i++){
+                final int voter = i;
+                trained.add(pool.submit(() -> task.train(voter, voterSeeds[voter], epochsTrained)));
+            }
+            for (int i = 0; i < numVoters; i++){
+                voters.add(trained.get(i).get());
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training voters", e);
+        } catch (ExecutionException e){
+            throw new IllegalStateException("A voter failed to train", e.getCause());
+        } finally{
+            pool.shutdownNow();
+        }
+
+        if (myStopping != null){
+            long totalEpochs = 0;
+            for (int count : epochsTrained){
+                totalEpochs += count;
+            }
+            System.out.println("Voters trained for " + (double)totalEpochs / numVoters + " of " + epochs + " epochs on average");
+        }
+        return voters;
+    }
+
+    /**
+     * Fine-tunes an already trained collection of neural networks with a
+     * few more epochs over new data. Each voter starts without momentum and
+     * is updated in place, one task per voter.
+     * @param voters The trained neural networks
+     * @param trainingSet The new rows
+     * @param epochs Number of training cycles for each neural network
+     */
+    public void fineTune(List<NeuralNetwork> voters, Dataset trainingSet, int epochs){
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, voters.size()));
+        try{
+            ArrayList<Future<?>> tuned = new ArrayList<Future<?>>();
+            for (NeuralNetwork currentNN : voters){
+                tuned.add(pool.submit(() -> {
+                    currentNN.clearMomentum();
+                    for (int j = 0; j < epochs; j++){
+                        currentNN.train(trainingSet, 1);
+                    }
+                }));
+            }
+            for (Future<?> current : tuned){
+                current.get();
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fine-tuning voters", e);
+        } catch (ExecutionException e){
+            throw new IllegalStateException("A voter failed to fine-tune", e.getCause());
+        } finally{
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Trains a single voter
+     * @param trainingData The data every voter is trained with
+     * @param voter The index of this voter
+     * @param numVoters Number of neural networks in the collection
+     * @param epochs Number of training cycles
+     * @param seed Seed for this voter's starting weights
+     * @param epochsTrained Where the number of epochs this voter trained is written
+     * @return currentNN The trained neural network
+     */
+    private NeuralNetwork createVoter(List<IOTuple> trainingData, int voter, int numVoters, int epochs, long seed,
+                                      int[] epochsTrained){
+        double stupification = 1.0/numVoters; //We want to train each Neural Network with a handicap, this may have an effect on how well they work together as a team
+
+        NeuralNetwork currentNN = hiddenLayers.length == 0 ? new NeuralNetwork() : new NeuralNetwork(hiddenLayers);
+        currentNN.initialize(trainingData.get(0), seed);
+
+        List<IOTuple> leftTrainSet = trainingData.subList(0, (int)(voter*trainingData.size()*stupification));
+        //Small subset of the data removed for stupification
+        List<IOTuple> rightTrainSet = trainingData.subList((int)((voter+1)*trainingData.size()*stupification), trainingData.size());
+
+        ArrayList<IOTuple> trainingSet = new ArrayList<IOTuple>();
+        trainingSet.addAll(leftTrainSet);
+        trainingSet.addAll(rightTrainSet);
+
+        if (myStopping != null){
+            // Each voter validates on a different slice, spread evenly over the training set
+            int numValidation = Math.max(1, (int)(trainingSet.size() * myStopping.getValidationFraction()));
+            int start = (int)((long)voter * (trainingSet.size() - numValidation) / numVoters);
+            List<IOTuple> validationSet = trainingSet.subList(start, start + numValidation);
+            ArrayList<IOTuple> remainingSet = new ArrayList<IOTuple>(trainingSet.subList(0, start));
+            remainingSet.addAll(trainingSet.subList(start + numValidation, trainingSet.size()));
+
+            EarlyStopping.History history = myStopping.train(currentNN, Dataset.fromIOTuples(remainingSet),
+                                                             Dataset.fromIOTuples(validationSet), epochs);
+            epochsTrained[voter] = history.getEpochsTrained();
+            return currentNN;
+        }
+
+        Dataset packedSet = Dataset.fromIOTuples(trainingSet); //Primitive rows, so training creates no objects
+        for (int j = 0; j < epochs; j++){
+            currentNN.train(packedSet, 1);
+        }
+        epochsTrained[voter] = epochs;
+
+        return currentNN;
+    }
+
+    /**
+     * Trains a single voter on rows of a MappedDataset, leaving out the
+     * same rows as createVoter(List, ...)
+     * @param trainingData The rows every voter is trained with
+     * @param voter The index of this voter
+     * @param numVoters Number of neural networks in the collection
+     * @param epochs Number of training cycles
+     * @param seed Seed for this voter's starting weights
+     * @param epochsTrained Where the number of epochs this voter trained is written
+     * @return currentNN The trained neural network
+     */
+    private NeuralNetwork createVoter(RowSet trainingData, int voter, int numVoters, int epochs, long seed,
+                                      int[] epochsTrained){
+        double stupification = 1.0/numVoters; //Each voter leaves out a different 1/numVoters of the data, as in createVoter(List, ...)
+
+        NeuralNetwork currentNN = hiddenLayers.length == 0 ? new NeuralNetwork() : new NeuralNetwork(hiddenLayers);
+        currentNN.initialize(trainingData.getData(), seed);
+
+        RowSet trainingSet = trainingData.subList(0, (int)(voter*trainingData.size()*stupification))
+                .concat(trainingData.subList((int)((voter+1)*trainingData.size()*stupification), trainingData.size()));
+
+        if (myStopping != null){
+            int numValidation = Math.max(1, (int)(trainingSet.size() * myStopping.getValidationFraction()));
+            int start = (int)((long)voter * (trainingSet.size() - numValidation) / numVoters);
+            RowSet validationSet = trainingSet.subList(start, start + numValidation);
+            RowSet remainingSet = trainingSet.subList(0, start).concat(trainingSet.subList(start + numValidation, trainingSet.size()));
+
+            EarlyStopping.History history = myStopping.train(currentNN, remainingSet, validationSet, epochs);
+            epochsTrained[voter] = history.getEpochsTrained();
+            return currentNN;
+        }
+
+        for (int j = 0; j < epochs; j++){
+            currentNN.train(trainingSet, 1);
+        }
+        epochsTrained[voter] = epochs;
+
+        return currentNN;
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * A collection of trained neural networks stored in single precision for
+ * prediction. Float is plenty for networks this small, halves the memory
+ * a loaded collection takes, and fits twice as many values in each cache
+ * line and vector register. Training still happens in double precision;
+ * a FloatEnsemble is made from the trained voters.
+ *
+ * Every voter's weights are packed one after another into two arrays, and
+ * a FloatEnsemble can be saved in a small binary format:
+ *
+ * magic "BBBF", version, voter count, input count, hidden count (ints),
+ * every voter's Input->Hidden weights, every voter's Hidden->Output
+ * weights (floats).
+ *
+ * Everything is little-endian. Only the first output of each voter is
+ * kept, since that is the one that votes. A FloatEnsemble holds no input
+ * maxima and minima, so it can't normalize compounds, and no serving path
+ * uses it: it is for measuring single precision against double (the
+ * floatVote case of Benchmark, and main).
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FloatEnsemble{
+    public static final int MAGIC = 0x46424242; // "BBBF" read as a little-endian int
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    private static final float BIAS = -1.0f;
+    private static final Kernels KERNELS = Kernels.get(); // Scalar, or Vector API loops if enabled
+    private int numVoters, numIn, numHidden;
+    private float[] inputWeights;   // Per voter, one row of (numIn + 1) per hidden Neuron
+    private float[] hiddenWeights;  // Per voter, one row of numHidden for the first output Neuron
+
+    /**
+     * Converts a double precision model to a float one and checks that the
+     * votes on the dataset match
+     * @param args Optional model file (BBBPredictor.model), float model file
+     * (BBBPredictor.f32) and dataset file (pybelData.bin)
+     */
+    public static void main(String[] args){
+        String modelFile = args.length > 0 ? args[0] : Predictor.MODEL_FILE;
+        String floatFile = args.length > 1 ? args[1] : "BBBPredictor.f32";
+        String dataFile = args.length > 2 ? args[2] : "pybelData.bin";
+
+        try{
+            ArrayList<NeuralNetwork> voters = Predictor.read(modelFile).getVoters();
+            new FloatEnsemble(voters).write(floatFile);
+            FloatEnsemble myEnsemble = FloatEnsemble.read(floatFile);
+            System.out.println("Saved " + myEnsemble.numVoters() + " voters in " + floatFile + " ("
+                               + myEnsemble.getWeightBytes() + " bytes of weights, half of double precision)");
+
+            int mismatches = myEnsemble.compareVotes(voters, Dataset.read(dataFile));
+            if (mismatches > 0){
+                System.out.println("The float votes differ from the double votes on " + mismatches + " compounds!");
+            } else {
+                System.out.println("The float votes match the double votes on every compound");
+            }
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Packs the weights of trained neural networks in single precision
+     * @param voters The trained neural networks, all the same size
+     */
+    public FloatEnsemble(List<NeuralNetwork> voters){
+        if (voters.isEmpty()){
+            throw new IllegalArgumentException("There are no voters to pack!");
+        }
+        numVoters = voters.size();
+        numIn = voters.get(0).getInputSize();
+        numHidden = voters.get(0).getHiddenSize();
+        int inputLength = numHidden * (numIn + 1);
+        inputWeights = new float[numVoters * inputLength];
+        hiddenWeights = new float[numVoters * numHidden];
+
+        for (int v = 0; v < numVoters; v++){
+            NeuralNetwork currentNN = voters.get(v);
+            if (currentNN.getHiddenLayers().length != 1){
+                throw new IllegalArgumentException("A FloatEnsemble only holds voters with one hidden layer!");
+            }
+            if (currentNN.getInputSize() != numIn || currentNN.getHiddenSize() != numHidden){
+                throw new IllegalArgumentException("Every voter must be the same size!");
+            }
+            double[] weights = new double[currentNN.getWeightCount()];
+            currentNN.copyWeights(weights);
+            for (int i = 0; i < inputLength; i++){
+                inputWeights[v * inputLength + i] = (float)weights[i];
+            }
+            for (int h = 0; h < numHidden; h++){
+                hiddenWeights[v * numHidden + h] = (float)weights[inputLength + h];
+            }
+        }
+    }
+
+    /**
+     * Creates a FloatEnsemble from packed weights
+     * @param voters Number of voters
+     * @param in Number of inputs per voter
+     * @param hidden Number of hidden Neurons per voter
+     * @param inputValues Every voter's Input->Hidden weights
+     * @param hiddenValues Every voter's Hidden->Output weights
+     */
+    private FloatEnsemble(int voters, int in, int hidden, float[] inputValues, float[] hiddenValues){
+        numVoters = voters;
+        numIn = in;
+        numHidden = hidden;
+        inputWeights = inputValues;
+        hiddenWeights = hiddenValues;
+    }
+
+    /**
+     * Reads a FloatEnsemble from a binary model file with a single bulk read
+     * @param filename The model file
+     * @return The FloatEnsemble
+     */
+    public static FloatEnsemble read(String filename) throws IOException{
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+            if (channel.size() > Integer.MAX_VALUE){
+                throw new IOException(filename + " is too large to read into memory");
+            }
+            buffer = ByteBuffer.allocate((int)channel.size());
+            while (buffer.hasRemaining()){
+                if (channel.read(buffer) < 0){
+                    throw new IOException(filename + " ended early");
+                }
+            }
+        }
+        buffer.flip();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC){
+            throw new IOException(filename + " is not a float model file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION){
+            throw new IOException(filename + " has model version " + version + ", expected " + VERSION);
+        }
+        int voters = buffer.getInt();
+        int in = buffer.getInt();
+        int hidden = buffer.getInt();
+        if (voters < 1 || in < 0 || hidden < 0
+                || buffer.remaining() != 4L * voters * hidden * (in + 2L)){
+            throw new IOException(filename + " has the wrong size for its header");
+        }
+
+        float[] inputValues = new float[voters * hidden * (in + 1)];
+        float[] hiddenValues = new float[voters * hidden];
+        FloatBuffer values = buffer.asFloatBuffer();
+        values.get(inputValues).get(hiddenValues);
+
+        return new FloatEnsemble(voters, in, hidden, inputValues, hiddenValues);
+    }
+
+    /**
+     * Writes this FloatEnsemble to a binary model file
+     * @param filename The model file
+     */
+    public void write(String filename) throws IOException{
+        long size = HEADER_BYTES + 4L * (inputWeights.length + hiddenWeights.length);
+        ByteBuffer buffer = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(numVoters).putInt(numIn).putInt(numHidden);
+        buffer.asFloatBuffer().put(inputWeights).put(hiddenWeights);
+        buffer.position(0);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Counts the voters that think a compound crosses the blood-brain
+     * barrier. Safe to call from many threads at once as long as each has
+     * its own buffer.
+     * @param input The normalized input values
+     * @param hiddens A buffer of at least getHiddenSize() values
+     * @return The number of yes votes
+     */
+    public int vote(float[] input, float[] hiddens){
+        if (input.length != numIn){
+            throw new IllegalArgumentException("Expected " + numIn + " inputs but got " + input.length);
+        }
+        int yes = 0;
+        for (int v = 0; v < numVoters; v++){
+            if (calculate(v, input, hiddens) >= .5f){
+                yes++;
+            }
+        }
+        return yes;
+    }
+
+    /**
+     * Calculates the first output of one voter
+     * @param voter The voter
+     * @param input The normalized input values
+     * @param hiddens Where the hidden values are written
+     * @return The first output value
+     */
+    private float calculate(int voter, float[] input, float[] hiddens){
+        int rowLength = numIn + 1;
+        int start = voter * numHidden * rowLength;
+        for (int h = 0; h < numHidden; h++){
+            int row = start + h * rowLength;
+            float currentSum = KERNELS.dot(inputWeights, row, input, 0, numIn);
+            hiddens[h] = currentSum + inputWeights[row + numIn] * BIAS;
+        }
+        KERNELS.sigmoid(hiddens, 0, numHidden);
+        return sigmoid(KERNELS.dot(hiddenWeights, voter * numHidden, hiddens, 0, numHidden));
+    }
+
+    /**
+     * Counts the compounds of a dataset whose majority vote differs from
+     * the double precision voters the FloatEnsemble was made from
+     * @param voters The double precision voters
+     * @param data The normalized compounds
+     * @return The number of compounds with a different majority vote
+     */
+    public int compareVotes(List<NeuralNetwork> voters, Dataset data){
+        if (voters.size() != numVoters || data.numInputs() != numIn){
+            throw new IllegalArgumentException("The voters and dataset don't match this FloatEnsemble!");
+        }
+        double[] inputs = data.getInputs();
+        double[] doubleInput = new double[numIn];
+        float[] floatInput = new float[numIn];
+        double[] activations = new double[voters.get(0).getActivationSize()];
+        float[] hiddens = new float[numHidden];
+        int mismatches = 0;
+
+        for (int r = 0; r < data.size(); r++){
+            for (int i = 0; i < numIn; i++){
+                doubleInput[i] = inputs[r * numIn + i];
+                floatInput[i] = (float)doubleInput[i];
+            }
+            int doubleYes = 0;
+            for (NeuralNetwork currentNN : voters){
+                if (currentNN.calculate(doubleInput, activations) >= .5){
+                    doubleYes++;
+                }
+            }
+            int floatYes = vote(floatInput, hiddens);
+            if (new Vote(doubleYes, numVoters - doubleYes).passes() != new Vote(floatYes, numVoters - floatYes).passes()){
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * The mathematically "convenient" sigmoid function, in single precision
+     * @return Self explanitory
+     */
+    private float sigmoid(float sum){
+        return 1.0f / (1.0f + (float)Math.exp(-sum));
+    }
+
+    /**
+     * Gets the number of voters
+     * @return numVoters The number of voters
+     */
+    public int numVoters(){
+        return numVoters;
+    }
+
+    /**
+     * Gets the number of input parameters each compound needs
+     * @return numIn The number of inputs
+     */
+    public int numInputs(){
+        return numIn;
+    }
+
+    /**
+     * Gets the size of the hidden buffer vote needs
+     * @return numHidden The number of hidden Neurons per voter
+     */
+    public int getHiddenSize(){
+        return numHidden;
+    }
+
+    /**
+     * Gets the memory taken by the packed weights
+     * @return The number of bytes of weights
+     */
+    public long getWeightBytes(){
+        return 4L * (inputWeights.length + hiddenWeights.length);
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * A collection of trained neural networks fused into one wide network for
+ * prediction. Every voter's Input->Hidden weights are stacked into a
+ * single matrix, stored one input at a time: column i holds input i's
+ * weight into every hidden Neuron of every voter, and the BIAS column is
+ * last. One pass over the input then adds each input times its column to
+ * the hidden sums of all voters at once, in long contiguous runs, instead
+ * of many short ones per voter. The Hidden->Output stage is block
+ * diagonal: each voter's output only reads its own hidden Neurons.
+ *
+ * With the scalar Kernels every sum is added up in the same order as
+ * NeuralNetwork.calculate, so the votes are identical to the bit. The
+ * weights are copied, so a FusedEnsemble has to be made again after the
+ * voters are trained further.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FusedEnsemble{
+    private static final double BIAS = -1.0;
+    private static final Kernels KERNELS = Kernels.get(); // Scalar, or Vector API loops if enabled
+    private int numVoters, numIn, numHidden;
+    private int width;                  // Hidden Neurons of every voter together
+    private double[] stackedWeights;    // (numIn + 1) columns of width Input->Hidden weights, BIAS column last
+    private double[] outputWeights;     // Per voter, one row of numHidden for the first output Neuron
+
+    /**
+     * Fuses the collection in a model file and checks that its votes on
+     * every compound of the dataset match the separate voters
+     * @param args Optional model file (BBBPredictor.model) and dataset
+     * file (pybelData.bin)
+     */
+    public static void main(String[] args){
+        String modelFile = args.length > 0 ? args[0] : Predictor.MODEL_FILE;
+        String dataFile = args.length > 1 ? args[1] : "pybelData.bin";
+
+        try{
+            ArrayList<NeuralNetwork> voters = Predictor.read(modelFile).getVoters();
+            if (!supports(voters)){
+                System.out.println("The voters in " + modelFile + " can't be fused: each needs a single hidden layer of the same size");
+                return;
+            }
+            FusedEnsemble myEnsemble = new FusedEnsemble(voters);
+            System.out.println("Fused " + myEnsemble.numVoters() + " voters into " + myEnsemble.width
+                               + " hidden Neurons of " + (myEnsemble.numIn + 1) + " weights");
+
+            int mismatches = myEnsemble.compareVotes(voters, Dataset.read(dataFile));
+            if (mismatches > 0){
+                System.out.println("The fused votes differ from the separate votes on " + mismatches + " compounds!");
+            } else {
+                System.out.println("The fused votes match the separate votes on every compound");
+            }
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Checks whether a collection of neural networks can be fused: every
+     * voter has a single hidden layer, and all of them are the same size
+     * @param voters The trained neural networks
+     * @return True if a FusedEnsemble can hold them
+     */
+    public static boolean supports(List<NeuralNetwork> voters){
+        if (voters.isEmpty()){
+            return false;
+        }
+        NeuralNetwork first = voters.get(0);
+        for (NeuralNetwork currentNN : voters){
+            if (currentNN.getHiddenLayers().length != 1 || currentNN.getInputSize() != first.getInputSize()
+                    || currentNN.getHiddenSize() != first.getHiddenSize()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stacks the weights of trained neural networks
+     * @param voters The trained neural networks, all the same size
+     */
+    public FusedEnsemble(List<NeuralNetwork> voters){
+        if (voters.isEmpty()){
+            throw new IllegalArgumentException("There are no voters to fuse!");
+        }
+        numVoters = voters.size();
+        numIn = voters.get(0).getInputSize();
+        numHidden = voters.get(0).getHiddenSize();
+        width = numVoters * numHidden;
+        int rowLength = numIn + 1;
+        stackedWeights = new double[rowLength * width];
+        outputWeights = new double[width];
+
+        for (int v = 0; v < numVoters; v++){
+            NeuralNetwork currentNN = voters.get(v);
+            if (currentNN.getHiddenLayers().length != 1){
+                throw new IllegalArgumentException("A FusedEnsemble only holds voters with one hidden layer!");
+            }
+            if (currentNN.getInputSize() != numIn || currentNN.getHiddenSize() != numHidden){
+                throw new IllegalArgumentException("Every voter must be the same size!");
+            }
+            double[] weights = new double[currentNN.getWeightCount()];
+            currentNN.copyWeights(weights);
+            for (int h = 0; h < numHidden; h++){
+                for (int i = 0; i < rowLength; i++){
+                    stackedWeights[i * width + v * numHidden + h] = weights[h * rowLength + i];
+                }
+                outputWeights[v * numHidden + h] = weights[numHidden * rowLength + h];
+            }
+        }
+    }
+
+    /**
+     * Counts the voters that think a compound crosses the blood-brain
+     * barrier. Safe to call from many threads at once as long as each has
+     * its own buffer. Like NeuralNetwork.calculate, it refuses inputs
+     * outside [-1, 1].
+     * @param input The normalized input values
+     * @param scratch A buffer of at least getScratchSize() values
+     * @param sigmoid The activation function
+     * @return The number of yes votes
+     */
+    public int vote(double[] input, double[] scratch, Activation sigmoid){
+        if (input.length != numIn){
+            throw new IllegalArgumentException("Expected " + numIn + " inputs but got " + input.length);
+        }
+        for (int i = 0; i < numIn; i++){
+            if (!(input[i] <= 1.0 && input[i] >= -1.0)){
+                throw new IllegalArgumentException("The value of this Neuron (" + input[i] + ") is NOT valid.");
+            }
+        }
+        Arrays.fill(scratch, 0, width, 0.0);
+        for (int i = 0; i < numIn; i++){
+            KERNELS.axpy(input[i], stackedWeights, i * width, scratch, 0, width);
+        }
+        KERNELS.axpy(BIAS, stackedWeights, numIn * width, scratch, 0, width);
+        sigmoid.apply(scratch, 0, width);
+
+        for (int v = 0; v < numVoters; v++){
+            scratch[width + v] = KERNELS.dot(outputWeights, v * numHidden, scratch, v * numHidden, numHidden);
+        }
+        sigmoid.apply(scratch, width, numVoters);
+
+        int yes = 0;
+        for (int v = 0; v < numVoters; v++){
+            if (scratch[width + v] >= .5){
+                yes++;
+            }
+        }
+        return yes;
+    }
+
+    /**
+     * Counts the compounds of a dataset whose yes votes differ from the
+     * separate voters the FusedEnsemble was made from
+     * @param voters The separate voters
+     * @param data The normalized compounds
+     * @return The number of compounds with a different number of yes votes
+     */
+    public int compareVotes(List<NeuralNetwork> voters, Dataset data){
+        if (voters.size() != numVoters || data.numInputs() != numIn){
+            throw new IllegalArgumentException("The voters and dataset don't match this FusedEnsemble!");
+        }
+        double[] inputs = data.getInputs();
+        double[] input = new double[numIn];
+        double[] activations = new double[voters.get(0).getActivationSize()];
+        double[] scratch = new double[getScratchSize()];
+        int mismatches = 0;
+
+        for (int r = 0; r < data.size(); r++){
+            System.arraycopy(inputs, r * numIn, input, 0, numIn);
+            int separateYes = 0;
+            for (NeuralNetwork currentNN : voters){
+                if (currentNN.calculate(input, activations) >= .5){
+                    separateYes++;
+                }
+            }
+            if (vote(input, scratch, Activation.EXACT) != separateYes){
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Gets the number of voters
+     * @return numVoters The number of voters
+     */
+    public int numVoters(){
+        return numVoters;
+    }
+
+    /**
+     * Gets the size of the buffer vote needs for every hidden and output
+     * value
+     * @return The number of hidden Neurons of every voter plus one output each
+     */
+    public int getScratchSize(){
+        return width + numVoters;
+    }
+}
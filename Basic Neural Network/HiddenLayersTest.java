@@ -0,0 +1,96 @@
+/**
+ * Class that tests that a collection of neural networks with more than one
+ * hidden layer can be saved, loaded with Predictor.read and scored with
+ * fusion asked for. Such voters can't be fused, so the Predictor has to
+ * keep running them one by one and give the same votes as the separate
+ * voters.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+
+public class HiddenLayersTest{
+    private static final int[] HIDDEN_LAYERS = {12, 6};
+    private static final int NUM_VOTERS = 5;
+    private static final int EPOCHS = 2;
+    private static final long SEED = 42;
+
+    /**
+     * Trains a small two hidden layer collection on pybelData.bin and
+     * checks its fused-requested votes
+     * @param args Optional dataset file (pybelData.bin)
+     */
+    public static void main(String[] args){
+        String dataFile = args.length > 0 ? args[0] : "pybelData.bin";
+
+        try{
+            Dataset data = Dataset.read(dataFile);
+            EnsembleTrainer myTrainer = new EnsembleTrainer(Runtime.getRuntime().availableProcessors(), SEED);
+            myTrainer.setHiddenLayers(HIDDEN_LAYERS);
+            ArrayList<NeuralNetwork> voters = myTrainer.createVoters(data.toIOTuples(), NUM_VOTERS, EPOCHS);
+
+            File modelFile = File.createTempFile("layers", ".model");
+            modelFile.deleteOnExit();
+            new Predictor(voters, data.getInputMinima(), data.getInputMaxima()).write(modelFile.getPath());
+            Predictor myPredictor = Predictor.read(modelFile.getPath());
+            myPredictor.setFused(true);
+
+            int mismatches = countMismatches(myPredictor, data);
+            if (myPredictor.isFused()){
+                System.out.println("Voters with hidden layers " + java.util.Arrays.toString(HIDDEN_LAYERS) + " were fused!");
+                System.exit(1);
+            } else if (mismatches > 0){
+                System.out.println("The votes differ from the separate voters on " + mismatches + " compounds!");
+                System.exit(1);
+            } else {
+                System.out.println("The two hidden layer collection votes like the separate voters on all "
+                                   + data.size() + " compounds");
+            }
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Counts the compounds whose vote, one at a time or as a block, differs
+     * from the separate voters
+     * @param myPredictor The loaded collection
+     * @param data The normalized compounds
+     * @return The number of compounds with a different number of yes votes
+     */
+    private static int countMismatches(Predictor myPredictor, Dataset data){
+        int numIn = data.numInputs();
+        double[] minima = myPredictor.getInputMinima();
+        double[] maxima = myPredictor.getInputMaxima();
+        double[] query = new double[numIn];
+        double[] raw = new double[data.size() * numIn];
+        int[] blockVotes = new int[data.size()];
+        int[] separateVotes = new int[data.size()];
+        ArrayList<NeuralNetwork> voters = myPredictor.getVoters();
+        double[] activations = new double[voters.get(0).getActivationSize()];
+        int mismatches = 0;
+
+        for (int r = 0; r < data.size(); r++){
+            System.arraycopy(data.getInputs(), r * numIn, query, 0, numIn);
+            for (int i = 0; i < numIn; i++){
+                raw[r * numIn + i] = minima[i] + query[i] * (maxima[i] - minima[i]);
+            }
+            for (NeuralNetwork currentNN : voters){
+                if (currentNN.calculate(query, activations) >= .5){
+                    separateVotes[r]++;
+                }
+            }
+            if (myPredictor.vote(query).getYes() != separateVotes[r]){
+                mismatches++;
+            }
+        }
+
+        myPredictor.predictBlock(raw, data.size(), blockVotes);
+        for (int r = 0; r < data.size(); r++){
+            if (blockVotes[r] >= 0 && blockVotes[r] != separateVotes[r]){
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+}
@@ -1,105 +1,83 @@
 /**
  * Class used for testing the effectiveness of a neural network using a
- * K-Fold Test
+ * K-Fold Test. The folds are RowSet views over a MappedDataset, so no
+ * fold copies any compounds.
  * @author Lou Brand
  */
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
 public class KFoldTest{
-    private ArrayList<IOTuple> myData;
+    private MappedDataset myData;
+    private RowSet myRows;
     private int epochs;
+    private int numThreads;
     private final double TOLERANCE = .5; //95% accuracy
     private final int NUM_FOLDS = 25;
     private final int NUM_DATAPOINTS = 1;
+    private final long SEED = 42; //Determines how our data is split into folds
     
     /**
      * Creates a KFoldTest object with a 
      * @param data The dataset of interest
      * @param numEpochs Number of training (backpropagation) cycles
+     * @param threads Number of folds trained at once
      */
-    public KFoldTest(ArrayList<IOTuple> data, int numEpochs){
+    public KFoldTest(MappedDataset data, int numEpochs, int threads){
         epochs = numEpochs;
+        numThreads = threads;
         myData = data; 
+        myRows = new RowSet(data);
         
+        Random rand = new Random(SEED);
         for (int i = 0; i < NUM_DATAPOINTS; i++){
-            Collections.shuffle(myData);
+            myRows.shuffle(rand);
             kFold();
         }
     }
     
     /**
      * Trains a neural network with different subsets of our dataset and
-     * tests the accuracy
+     * tests the accuracy. Every fold runs as its own task, and the results
+     * are printed in fold order once each fold is done.
      */
     private void kFold(){
-        int numInTestSet = myData.size()/NUM_FOLDS;
         double avgPercentRight = 0.0;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, NUM_FOLDS));
         
-        for (int i = 0; i < NUM_FOLDS; i++){
-            NeuralNetwork currentNN = new NeuralNetwork();
-            
-            currentNN.initialize(myData.get(0)); //Initialize the NeuralNetwork with a piece of data. (This will be changed later)
-            
-            List<IOTuple> leftTrainSet = myData.subList(0, i*numInTestSet);
-            List<IOTuple> testSet = myData.subList(i*numInTestSet, (i+1)*numInTestSet);
-            List<IOTuple> rightTrainSet = myData.subList((i+1)*numInTestSet, myData.size());
-            
-            ArrayList<IOTuple> trainingSet = new ArrayList<IOTuple>();
-            trainingSet.addAll(leftTrainSet);
-            trainingSet.addAll(rightTrainSet);
-            
-            for (int j = 0; j < epochs; j++){
-                //System.out.println("Epoch: " + j);
-                for (IOTuple trainingIO : trainingSet){
-                    currentNN.newIO(trainingIO);
-                    currentNN.feedForward();
-                    currentNN.backProp();
-                }
+        try{
+            ArrayList<Future<FoldResult>> folds = new ArrayList<Future<FoldResult>>();
+            for (int i = 0; i < NUM_FOLDS; i++){
+                final int fold = i;
+                folds.add(pool.submit(() -> fold(fold)));
             }
             
-            double sumSquaredError = 0.0;
-            int numRight = 0;
-            int falsePositive = 0;
-            int falseNegative = 0;
-            int numWrong = 0;
-            
-            for (IOTuple testingIO : testSet){
-                currentNN.newIO(testingIO);
-                currentNN.feedForward();
-                double calculated = currentNN.getCalculatedValue(); 
-                double expected = currentNN.getExpectedOutput();
-                System.out.println("Expected: " + expected + " Calculated: " + calculated);
+            for (Future<FoldResult> currentFold : folds){
+                FoldResult result = currentFold.get();
+                System.out.print(result.log);
+                System.out.println("The NeuralNetwork is right " + result.percentRight + "% of the time.");
+                System.out.println("The NeuralNetwork was wrong " + result.numWrong + " times");
+                System.out.println("False Positives: " + result.falsePositive);
+                System.out.println("False Negatives: " + result.falseNegative);
                 
-                double error = Math.abs(calculated - expected);
-                if (error < TOLERANCE){
-                    numRight++;
-                } else {
-                    numWrong++;
-                    if (expected == 1.0){
-                        falseNegative++;
-                    }
-                    if (expected == 0.0){
-                        falsePositive++;
-                    }
-                }
+                avgPercentRight += result.percentRight;
             }
-            
-            double percentRight = 100.0 * (double)numRight/(double)testSet.size();
-            
-            //System.out.println("Fold " + (i+1) + ", has a mean SSE of: " + sumSquaredError/(double)testSet.size());
-            System.out.println("The NeuralNetwork is right " + percentRight + "% of the time.");
-            System.out.println("The NeuralNetwork was wrong " + numWrong + " times");
-            System.out.println("False Positives: " + falsePositive);
-            System.out.println("False Negatives: " + falseNegative);
-            
-            avgPercentRight += percentRight;
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running folds", e);
+        } catch (ExecutionException e){
+            throw new IllegalStateException("A fold failed", e.getCause());
+        } finally{
+            pool.shutdownNow();
         }
         
         System.out.println("The NeuralNetwork was correct on average " + avgPercentRight/(double)NUM_FOLDS + "% of the time.");
@@ -108,4 +86,67 @@ public class KFoldTest{
         System.out.println("Hidden Ratio: 0.5");
         System.out.println("Tolerance: \u00B1" + TOLERANCE);
     }
+    
+    /**
+     * Trains a neural network on every fold but one and tests it on the
+     * fold that was left out. Only reads myRows, so folds can run at once.
+     * @param i The fold used as the test set
+     * @return result The accuracy, mistakes and output of this fold
+     */
+    private FoldResult fold(int i){
+        int numInTestSet = myRows.size()/NUM_FOLDS;
+        NeuralNetwork currentNN = new NeuralNetwork();
+        
+        currentNN.initialize(myData, SEED + i); //Each fold starts from its own weights
+        
+        RowSet leftTrainSet = myRows.subList(0, i*numInTestSet);
+        RowSet testSet = myRows.subList(i*numInTestSet, (i+1)*numInTestSet);
+        RowSet rightTrainSet = myRows.subList((i+1)*numInTestSet, myRows.size());
+        RowSet trainingSet = leftTrainSet.concat(rightTrainSet); //Only the row numbers are copied
+        
+        for (int j = 0; j < epochs; j++){
+            //System.out.println("Epoch: " + j);
+            currentNN.train(trainingSet, 1);
+        }
+        
+        FoldResult result = new FoldResult();
+        StringBuilder log = new StringBuilder();
+        int numRight = 0;
+        
+        for (int t = 0; t < testSet.size(); t++){
+            currentNN.newIO(myData, testSet.get(t));
+            currentNN.feedForward();
+            double calculated = currentNN.getCalculatedValue(); 
+            double expected = currentNN.getExpectedOutput();
+            log.append("Expected: " + expected + " Calculated: " + calculated + System.lineSeparator());
+            
+            double error = Math.abs(calculated - expected);
+            if (error < TOLERANCE){
+                numRight++;
+            } else {
+                result.numWrong++;
+                if (expected == 1.0){
+                    result.falseNegative++;
+                }
+                if (expected == 0.0){
+                    result.falsePositive++;
+                }
+            }
+        }
+        
+        result.percentRight = 100.0 * (double)numRight/(double)testSet.size();
+        result.log = log.toString();
+        return result;
+    }
+    
+    /**
+     * The outcome of testing a single fold
+     */
+    private static class FoldResult{
+        double percentRight;
+        int numWrong;
+        int falsePositive;
+        int falseNegative;
+        String log;
+    }
 }
@@ -0,0 +1,108 @@
+/**
+ * The loops at the heart of the neural network, over flat arrays: dot
+ * products for the weighted sums, the sigmoid of a layer, and the
+ * gradient and momentum weight updates. ScalarKernels always works;
+ * VectorKernels (in the simd folder) uses the JDK Vector API and is only
+ * used when it was compiled and the jdk.incubator.vector module is
+ * enabled, for example:
+ *
+ * javac --add-modules jdk.incubator.vector -d . simd/VectorKernels.java
+ * java --add-modules jdk.incubator.vector Driver
+ *
+ * The vector kernels add up dot products in a different order, so their
+ * results can differ from the scalar ones in the last few bits. Run with
+ * -Dkernels=scalar to force the scalar kernels.
+ * @author Lou Brand
+ */
+
+public interface Kernels{
+    /**
+     * Gets the fastest kernels that can run in this JVM
+     * @return The vector kernels if they are available, otherwise the
+     * scalar kernels
+     */
+    static Kernels get(){
+        if (!"scalar".equals(System.getProperty("kernels"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+            try{
+                return (Kernels)Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e){
+                // Not compiled, or the Vector API can't be used here; fall back to scalar
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * Gets the name of these kernels, for reports
+     * @return The name
+     */
+    String getName();
+
+    /**
+     * Multiplies two runs of values pairwise and adds up the products
+     * @param a The first array
+     * @param aStart Index of the first value in a
+     * @param b The second array
+     * @param bStart Index of the first value in b
+     * @param length Number of values
+     * @return The dot product
+     */
+    double dot(double[] a, int aStart, double[] b, int bStart, int length);
+
+    /**
+     * Multiplies two runs of single precision values pairwise and adds up
+     * the products
+     * @param a The first array
+     * @param aStart Index of the first value in a
+     * @param b The second array
+     * @param bStart Index of the first value in b
+     * @param length Number of values
+     * @return The dot product
+     */
+    float dot(float[] a, int aStart, float[] b, int bStart, int length);
+
+    /**
+     * Replaces each value of a run with its sigmoid, 1 / (1 + e ^ -x)
+     * @param values The array
+     * @param start Index of the first value
+     * @param length Number of values
+     */
+    void sigmoid(double[] values, int start, int length);
+
+    /**
+     * Replaces each single precision value of a run with its sigmoid
+     * @param values The array
+     * @param start Index of the first value
+     * @param length Number of values
+     */
+    void sigmoid(float[] values, int start, int length);
+
+    /**
+     * Adds a multiple of one run to another: y = y + scale * x
+     * @param scale The multiple
+     * @param x The run that is added
+     * @param xStart Index of the first value in x
+     * @param y The run that is added to
+     * @param yStart Index of the first value in y
+     * @param length Number of values
+     */
+    void axpy(double scale, double[] x, int xStart, double[] y, int yStart, int length);
+
+    /**
+     * The back-propagation weight update for one row of weights. The
+     * gradient of weight i is scale * x[i], and
+     * w = w + gradient * rate + m * momentum, then m = gradient
+     * @param weights The weights
+     * @param momentum The last gradient of each weight
+     * @param start Index of the first weight (and momentum)
+     * @param scale The delta of the Neuron the row feeds
+     * @param x The values feeding the row
+     * @param xStart Index of the first value in x
+     * @param length Number of weights
+     * @param rate The learning rate
+     * @param moment The momentum
+     */
+    void update(double[] weights, double[] momentum, int start, double scale, double[] x, int xStart,
+                int length, double rate, double moment);
+}
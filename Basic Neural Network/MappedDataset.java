@@ -0,0 +1,166 @@
+/**
+ * A binary Dataset file that is memory-mapped instead of read into the
+ * heap. Rows are read straight out of the mapped file, so datasets larger
+ * than the heap can be streamed through a NeuralNetwork. See Dataset for
+ * the file format.
+ * @author Lou Brand
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class MappedDataset{
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE & ~7L; // A single mapping is at most 2GB
+    private int numRows, numIn, numOut;
+    private int rowsPerSegment;
+    private DoubleBuffer[] inputSegments;   // rowsPerSegment rows of inputs per segment
+    private DoubleBuffer[] outputSegments;  // rowsPerSegment rows of outputs per segment
+    private double[] minIn, maxIn, minOut, maxOut;
+
+    /**
+     * Maps a binary Dataset file into memory
+     * @param filename The dataset file
+     */
+    public MappedDataset(String filename) throws IOException{
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()){
+                if (channel.read(header) < 0){
+                    throw new IOException(filename + " is not a dataset file");
+                }
+            }
+            header.flip();
+            if (header.getInt() != Dataset.MAGIC){
+                throw new IOException(filename + " is not a dataset file");
+            }
+            int version = header.getInt();
+            if (version != Dataset.VERSION){
+                throw new IOException(filename + " has dataset version " + version + ", expected " + Dataset.VERSION);
+            }
+            numRows = header.getInt();
+            numIn = header.getInt();
+            numOut = header.getInt();
+
+            long minMaxBytes = 8L * (2L * numIn + 2L * numOut);
+            long inputBytes = 8L * numRows * numIn;
+            long outputBytes = 8L * numRows * numOut;
+            if (numRows < 0 || numIn < 1 || numOut < 1
+                    || channel.size() != HEADER_BYTES + minMaxBytes + inputBytes + outputBytes){
+                throw new IOException(filename + " has the wrong size for its header");
+            }
+
+            DoubleBuffer minMax = map(channel, HEADER_BYTES, minMaxBytes);
+            minIn = new double[numIn];
+            maxIn = new double[numIn];
+            minOut = new double[numOut];
+            maxOut = new double[numOut];
+            minMax.get(minIn).get(maxIn).get(minOut).get(maxOut);
+
+            rowsPerSegment = (int)Math.min(Math.max(numRows, 1), MAX_SEGMENT_BYTES / (8L * Math.max(numIn, numOut)));
+            int numSegments = (numRows + rowsPerSegment - 1) / rowsPerSegment;
+            inputSegments = new DoubleBuffer[numSegments];
+            outputSegments = new DoubleBuffer[numSegments];
+            long inputStart = HEADER_BYTES + minMaxBytes;
+            long outputStart = inputStart + inputBytes;
+            for (int s = 0; s < numSegments; s++){
+                long firstRow = (long)s * rowsPerSegment;
+                long segmentRows = Math.min(rowsPerSegment, numRows - firstRow);
+                inputSegments[s] = map(channel, inputStart + 8L * firstRow * numIn, 8L * segmentRows * numIn);
+                outputSegments[s] = map(channel, outputStart + 8L * firstRow * numOut, 8L * segmentRows * numOut);
+            }
+        }
+    }
+
+    /**
+     * Maps part of a file as little-endian doubles
+     * @param channel The open file
+     * @param position Where the mapping starts
+     * @param size Number of bytes to map
+     * @return The mapped doubles
+     */
+    private static DoubleBuffer map(FileChannel channel, long position, long size) throws IOException{
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    /**
+     * Gets an input value of a row, read straight from the mapped file
+     * @param row The row
+     * @param i The input
+     * @return The normalized input value
+     */
+    public double getInput(int row, int i){
+        return inputSegments[row / rowsPerSegment].get((row % rowsPerSegment) * numIn + i);
+    }
+
+    /**
+     * Gets an output value of a row, read straight from the mapped file
+     * @param row The row
+     * @param k The output
+     * @return The normalized output value
+     */
+    public double getOutput(int row, int k){
+        return outputSegments[row / rowsPerSegment].get((row % rowsPerSegment) * numOut + k);
+    }
+
+    /**
+     * Gets the number of compounds in this dataset
+     * @return numRows The number of rows
+     */
+    public int size(){
+        return numRows;
+    }
+
+    /**
+     * Gets the number of inputs per compound
+     * @return numIn The number of inputs
+     */
+    public int numInputs(){
+        return numIn;
+    }
+
+    /**
+     * Gets the number of outputs per compound
+     * @return numOut The number of outputs
+     */
+    public int numOutputs(){
+        return numOut;
+    }
+
+    /**
+     * Gets the minimum of each input column before normalization
+     * @return minIn The input minima
+     */
+    public double[] getInputMinima(){
+        return minIn;
+    }
+
+    /**
+     * Gets the maximum of each input column before normalization
+     * @return maxIn The input maxima
+     */
+    public double[] getInputMaxima(){
+        return maxIn;
+    }
+
+    /**
+     * Gets the minimum of each output column before normalization
+     * @return minOut The output minima
+     */
+    public double[] getOutputMinima(){
+        return minOut;
+    }
+
+    /**
+     * Gets the maximum of each output column before normalization
+     * @return maxOut The output maxima
+     */
+    public double[] getOutputMaxima(){
+        return maxOut;
+    }
+}
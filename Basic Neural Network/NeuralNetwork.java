@@ -1,16 +1,40 @@
 /**
- * This object represents a Neural Network. This is where most of the 
- * algorithm takes place. 
+ * This object represents a Neural Network. This is where most of the
+ * algorithm takes place. Each layer's values, weights and momentum are
+ * stored in flat double arrays so that the feed-forward and
+ * back-propagation loops walk contiguous memory.
+ *
+ * There can be any number of hidden layers. Layer 0 is the InputLayer
+ * (plus the BIAS), the last layer is the OutputLayer, and layerWeights[l]
+ * holds the weights from layer l to layer l + 1, one row per Neuron of
+ * layer l + 1. By default there is a single hidden layer of
+ * HIDDEN_RATIO * inputs Neurons.
  * @author Lou Brand
  * @author Matthew Dickinson
  */
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 public class NeuralNetwork implements java.io.Serializable{
-    private InputLayer myInput;
-    private HiddenLayer myHidden;
-    private OutputLayer myOutput;
+    private static final long serialVersionUID = 1L; // Keeps saved voters loadable when methods change
+    private int[] layerSizes;           // Neurons in each layer: inputs (without the BIAS), each hidden layer, outputs
+    private double[][] layerWeights;    // Weights from layer l to l + 1, one row per Neuron of layer l + 1
+    private double[][] layerMomentum;
+    private transient int[] hiddenLayers;       // Hidden layer sizes asked for before initialize
+    private transient double[] myInputs;        // Input Neuron values, the last one is the BIAS
+    private transient double[] myValues;        // Every hidden layer's values, then the output values
+    private transient double[] myDeltas;        // Back-propagation delta of every Neuron in myValues
+    private transient double[] myExpected;      // Expected output values
+    private transient int[] layerStart;         // Index in myValues of the first Neuron of layer l (l >= 1)
+    private transient double[][] layerGradient; // Gradients accumulated over a batch
+    private transient int numIn, numHidden, numOut; // numHidden counts the Neurons of every hidden layer
+    private final double BIAS = -1.0;
+    private static final Kernels KERNELS = Kernels.get(); // Scalar, or Vector API loops if enabled
     /*Programmer's Decision*/
     private final double LEARNING_RATE = .7;
     private final double MOMENTUM = .5;
@@ -19,74 +43,434 @@ public class NeuralNetwork implements java.io.Serializable{
     /*private final double LEARNING_RATE = 0.910115213954211;
     private final double MOMENTUM = 0.4699219502005253;
     private final double HIDDEN_RATIO = 0.6440187969710447;*/
-    
+
 
     /**
-    * Empty constructor
+    * Empty constructor, for a single hidden layer of HIDDEN_RATIO * inputs Neurons
     */
     public NeuralNetwork(){}
 
+    /**
+    * Creates a NeuralNetwork with a chosen number and size of hidden layers
+    * @param hiddenSizes The number of Neurons in each hidden layer, from
+    * the InputLayer towards the OutputLayer
+    */
+    public NeuralNetwork(int... hiddenSizes){
+        if (hiddenSizes.length == 0){
+            throw new IllegalArgumentException("There must be at least one hidden layer.");
+        }
+        for (int size : hiddenSizes){
+            if (size < 1){
+                throw new IllegalArgumentException("A hidden layer (" + size + ") must have at least 1 Neuron.");
+            }
+        }
+        hiddenLayers = hiddenSizes.clone();
+    }
+
+    /**
+    * Creates an already trained NeuralNetwork from weights saved by
+    * copyWeights, for example ones read from a model file
+    * @param sizes The Neurons in each layer: inputs (without the BIAS),
+    * each hidden layer, outputs
+    * @param weights The weights, in the order copyWeights writes them
+    */
+    public NeuralNetwork(int[] sizes, double[] weights){
+        if (sizes.length < 3){
+            throw new IllegalArgumentException("There must be at least one hidden layer.");
+        }
+        for (int size : sizes){
+            if (size < 1){
+                throw new IllegalArgumentException("A layer (" + size + ") must have at least 1 Neuron.");
+            }
+        }
+        layerSizes = sizes.clone();
+        layerWeights = new double[layerSizes.length - 1][];
+        layerMomentum = new double[layerWeights.length][];
+        for (int l = 0; l < layerWeights.length; l++){
+            layerWeights[l] = new double[layerSizes[l + 1] * rowLength(l)];
+            layerMomentum[l] = new double[layerWeights[l].length];
+        }
+        createBuffers();
+        setWeights(weights);
+    }
+
+    /**
+    * Reads a saved NeuralNetwork. NeuralNetworks saved before hidden layers
+    * could be stacked have a single hidden layer and keep their weights in
+    * inputWeights and hiddenWeights; those are moved into the layers here.
+    * @param in The stream the NeuralNetwork is read from
+    */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException{
+        ObjectInputStream.GetField fields = in.readFields();
+        if (fields.getObjectStreamClass().getField("layerWeights") != null){
+            layerSizes = (int[])fields.get("layerSizes", null);
+            layerWeights = (double[][])fields.get("layerWeights", null);
+            layerMomentum = (double[][])fields.get("layerMomentum", null);
+        } else {
+            layerSizes = new int[]{fields.get("numIn", 0), fields.get("numHidden", 0), fields.get("numOut", 0)};
+            layerWeights = new double[][]{(double[])fields.get("inputWeights", null), (double[])fields.get("hiddenWeights", null)};
+            layerMomentum = new double[][]{(double[])fields.get("inputMomentum", null), (double[])fields.get("hiddenMomentum", null)};
+        }
+        if (layerSizes == null || layerSizes.length < 3 || layerWeights == null
+                || layerWeights.length != layerSizes.length - 1 || layerMomentum == null
+                || layerMomentum.length != layerWeights.length){
+            throw new java.io.InvalidObjectException("The layers of this NeuralNetwork don't fit together");
+        }
+        createBuffers();
+    }
+
     /**
     * Adds a new Input and Output object into the NeuralNetwork for training and testing purposes
     * Remember: This keeps the integrity of the edges!
-    * @param newInput The next Input
-    * @param newOutput The next Output
+    * @param newIO The next Input and Output pair
     */
     public void newIO(IOTuple newIO){
-        Input newInput = newIO.getInput();
-        Output newOutput = newIO.getOutput();
+        ArrayList<Double> newInputs = newIO.getInput().getInputs();
+        ArrayList<Double> newOutputs = newIO.getOutput().getOutputs();
 
-        ArrayList<Neuron> inputNeurons = myInput.getNeurons();
-        for (int i = 0; i < inputNeurons.size()-1; i++){		// The minus-one is to not change the BIAS!!!!!!!!
-            Neuron current = inputNeurons.get(i);
-            double newValue = newInput.getInputs().get(i);
-            current.setValue(newValue);
+        for (int i = 0; i < numIn; i++){		// The BIAS sits at index numIn and is never changed
+            myInputs[i] = checkValue(newInputs.get(i));
+        }
+        if (newOutputs != null){
+            for (int k = 0; k < numOut; k++){
+                myExpected[k] = newOutputs.get(k);
+            }
         }
-        myOutput.setExpectedOutputs(newOutput);
     }
 
     /**
-    * Initializes the NeuralNetwork's Synapses between each Layer
+    * Adds a row of a MappedDataset into the NeuralNetwork. The values are
+    * read straight from the mapped file, nothing is copied or boxed.
+    * @param data The dataset
+    * @param row The row to use
+    */
+    public void newIO(MappedDataset data, int row){
+        for (int i = 0; i < numIn; i++){
+            myInputs[i] = checkValue(data.getInput(row, i));
+        }
+        for (int k = 0; k < numOut; k++){
+            myExpected[k] = data.getOutput(row, k);
+        }
+    }
+
+    /**
+    * Initializes the NeuralNetwork's weights between each Layer
+    * @param initialIO An Input and Output pair that determines the size of each Layer
     */
     public void initialize(IOTuple initialIO){
-        Input initialInput = initialIO.getInput();
-        Output initialOutput = initialIO.getOutput();
+        initialize(initialIO, new Random());
+    }
+
+    /**
+    * Initializes the NeuralNetwork's weights between each Layer from a seed,
+    * so the same seed always gives the same starting weights
+    * @param initialIO An Input and Output pair that determines the size of each Layer
+    * @param seed The seed for the random starting weights
+    */
+    public void initialize(IOTuple initialIO, long seed){
+        initialize(initialIO, new Random(seed));
+    }
+
+    /**
+    * Sizes each Layer and gives every weight a random value between [-1, 1]
+    * @param initialIO An Input and Output pair that determines the size of each Layer
+    * @param rand The source of the random starting weights
+    */
+    private void initialize(IOTuple initialIO, Random rand){
+        initialize(initialIO.getInput().size(), initialIO.getOutput().size(), rand);
+        newIO(initialIO);
+    }
+
+    /**
+    * Initializes the NeuralNetwork's weights between each Layer from a seed,
+    * sized to fit the rows of a MappedDataset
+    * @param data The dataset
+    * @param seed The seed for the random starting weights
+    */
+    public void initialize(MappedDataset data, long seed){
+        initialize(data.numInputs(), data.numOutputs(), new Random(seed));
+    }
+
+    /**
+    * Initializes the NeuralNetwork's weights between each Layer from a seed,
+    * sized to fit the rows of a Dataset
+    * @param data The dataset
+    * @param seed The seed for the random starting weights
+    */
+    public void initialize(Dataset data, long seed){
+        initialize(data.numInputs(), data.numOutputs(), new Random(seed));
+    }
 
-        myInput = new InputLayer(initialInput);
-        myHidden = new HiddenLayer((int)(initialInput.size() * HIDDEN_RATIO));
-        myOutput = new OutputLayer(initialOutput);
+    /**
+    * Sizes each Layer and gives every weight a random value between [-1, 1]
+    * @param inputs Number of input Neurons, not counting the BIAS
+    * @param outputs Number of output Neurons
+    * @param rand The source of the random starting weights
+    */
+    private void initialize(int inputs, int outputs, Random rand){
+        int[] hidden = hiddenLayers != null ? hiddenLayers : new int[]{(int)(inputs * HIDDEN_RATIO)};
+        layerSizes = new int[hidden.length + 2];
+        layerSizes[0] = inputs;
+        System.arraycopy(hidden, 0, layerSizes, 1, hidden.length);
+        layerSizes[layerSizes.length - 1] = outputs;
 
-        for (Neuron inputNeuron : myInput.getNeurons()){
-            for (Neuron hiddenNeuron : myHidden.getNeurons()){
-                Synapse inputToHidden = new Synapse(inputNeuron, hiddenNeuron);
+        layerWeights = new double[layerSizes.length - 1][];
+        layerMomentum = new double[layerWeights.length][];
+        for (int l = 0; l < layerWeights.length; l++){
+            layerWeights[l] = new double[layerSizes[l + 1] * rowLength(l)];
+            layerMomentum[l] = new double[layerWeights[l].length];
+            for (int i = 0; i < layerWeights[l].length; i++){
+                layerWeights[l][i] = rand.nextDouble() * 2.0 - 1.0;
             }
         }
-        for (Neuron hiddenNeuron : myHidden.getNeurons()){
-            for (Neuron outputNeuron : myOutput.getNeurons()){
-                Synapse hiddenToOutput = new Synapse(hiddenNeuron, outputNeuron);
-            }
+        createBuffers();
+    }
+
+    /**
+    * Creates the value buffers that go with the layer sizes
+    */
+    private void createBuffers(){
+        int numLayers = layerSizes.length;
+        numIn = layerSizes[0];
+        numOut = layerSizes[numLayers - 1];
+        layerStart = new int[numLayers];
+        numHidden = 0;
+        for (int l = 1; l < numLayers - 1; l++){
+            layerStart[l] = numHidden;
+            numHidden += layerSizes[l];
         }
+        layerStart[numLayers - 1] = numHidden;
+
+        myInputs = new double[numIn + 1];
+        myInputs[numIn] = BIAS;
+        myValues = new double[numHidden + numOut];
+        myDeltas = new double[myValues.length];
+        myExpected = new double[numOut];
+        layerGradient = null;
+    }
+
+    /**
+    * Gets the length of one row of weights feeding layer l + 1
+    * @param l The layer the weights come from
+    * @return The number of Neurons in layer l, plus the BIAS for the InputLayer
+    */
+    private int rowLength(int l){
+        return l == 0 ? layerSizes[0] + 1 : layerSizes[l];
     }
 
     /**
     * Feeds the InputLayer through the NeuralNetwork and calculates the OutputLayer
     */
     public void feedForward(){
-        for (Neuron hidden : myHidden.getNeurons()){
-            ArrayList<Synapse> edges = hidden.getInputSynapses();
-            double currentSum = 0.0;
-            for (Synapse current : edges){
-                currentSum += current.getWeight() * current.getOrigin().getValue();
+        forward(myInputs, myValues, Activation.EXACT);
+    }
+
+    /**
+    * Calculates the output of this NeuralNetwork for an input without
+    * changing the NeuralNetwork. The hidden and output values are written
+    * to a buffer owned by the caller, so any number of threads can use the
+    * same NeuralNetwork at once as long as each has its own buffer.
+    * @param input The normalized input values (without the BIAS)
+    * @param activations A buffer of at least getActivationSize() values
+    * @return The first output value
+    */
+    public double calculate(double[] input, double[] activations){
+        return calculate(input, activations, Activation.EXACT);
+    }
+
+    /**
+    * Calculates the output of this NeuralNetwork for an input without
+    * changing the NeuralNetwork, using a chosen activation function (such
+    * as a faster approximation of the sigmoid)
+    * @param input The normalized input values (without the BIAS)
+    * @param activations A buffer of at least getActivationSize() values
+    * @param sigmoid The activation function
+    * @return The first output value
+    */
+    public double calculate(double[] input, double[] activations, Activation sigmoid){
+        if (input.length != numIn){
+            throw new IllegalArgumentException("Expected " + numIn + " inputs but got " + input.length);
+        }
+        for (int i = 0; i < numIn; i++){
+            checkValue(input[i]);
+        }
+        forward(input, activations, sigmoid);
+        return activations[numHidden];
+    }
+
+    /**
+    * Calculates the first output of this NeuralNetwork for a block of
+    * inputs at once without changing the NeuralNetwork. Each weight row is
+    * used for every input in the block before moving on, so it stays in
+    * cache (a matrix-matrix product instead of one matrix-vector product
+    * per input). Gives the same values as calculate for every row (to the
+    * bit with the scalar kernels), but the inputs are not range checked.
+    * @param inputs numRows rows of numIn normalized input values
+    * @param numRows Number of inputs in the block
+    * @param hiddens A buffer of at least numRows * getHiddenSize() values
+    * @param results Where the first output of each row is written
+    * @param sigmoid The activation function
+    */
+    public void calculateBlock(double[] inputs, int numRows, double[] hiddens, double[] results, Activation sigmoid){
+        // Hidden layer l of input r starts at numRows * layerStart[l] + r * layerSizes[l]
+        double[] inputWeights = layerWeights[0];
+        int inputRow = numIn + 1;
+        int firstSize = layerSizes[1];
+        for (int h = 0; h < firstSize; h++){
+            int row = h * inputRow;
+            for (int r = 0; r < numRows; r++){
+                double currentSum = KERNELS.dot(inputWeights, row, inputs, r * numIn, numIn);
+                hiddens[r * firstSize + h] = currentSum + inputWeights[row + numIn] * BIAS;
             }
-            hidden.setValue(sigmoid(currentSum));
         }
-        for (Neuron output : myOutput.getNeurons()){
-            ArrayList<Synapse> edges = output.getInputSynapses();
-            double currentSum = 0.0;
-            for (Synapse current : edges){
-                currentSum += current.getWeight() * current.getOrigin().getValue();
+        sigmoid.apply(hiddens, 0, numRows * firstSize);
+
+        int last = layerWeights.length - 1;
+        for (int l = 1; l < last; l++){
+            double[] weights = layerWeights[l];
+            int rowLength = layerSizes[l];
+            int size = layerSizes[l + 1];
+            int from = numRows * layerStart[l];
+            int block = numRows * layerStart[l + 1];
+            for (int j = 0; j < size; j++){
+                for (int r = 0; r < numRows; r++){
+                    hiddens[block + r * size + j] = KERNELS.dot(weights, j * rowLength, hiddens, from + r * rowLength, rowLength);
+                }
+            }
+            sigmoid.apply(hiddens, block, numRows * size);
+        }
+        int rowLength = layerSizes[last];
+        for (int r = 0; r < numRows; r++){
+            int from = numRows * layerStart[last] + r * rowLength;
+            results[r] = KERNELS.dot(layerWeights[last], 0, hiddens, from, rowLength);
+        }
+        sigmoid.apply(results, 0, numRows);
+    }
+
+    /**
+    * Gets the number of hidden Neurons, in every hidden layer together
+    * @return numHidden The size of the HiddenLayers
+    */
+    public int getHiddenSize(){
+        return numHidden;
+    }
+
+    /**
+    * Gets the number of input Neurons, not counting the BIAS
+    * @return numIn The size of the InputLayer
+    */
+    public int getInputSize(){
+        return numIn;
+    }
+
+    /**
+    * Gets the size of each hidden layer
+    * @return The number of Neurons in each hidden layer, from the
+    * InputLayer towards the OutputLayer
+    */
+    public int[] getHiddenLayers(){
+        return Arrays.copyOfRange(layerSizes, 1, layerSizes.length - 1);
+    }
+
+    /**
+    * Gets the number of output Neurons
+    * @return numOut The size of the OutputLayer
+    */
+    public int getOutputSize(){
+        return numOut;
+    }
+
+    /**
+    * Gets the number of weights in this NeuralNetwork
+    * @return The number of Input->Hidden and Hidden->Output weights
+    */
+    public int getWeightCount(){
+        int count = 0;
+        for (double[] weights : layerWeights){
+            count += weights.length;
+        }
+        return count;
+    }
+
+    /**
+    * Copies every weight into a buffer, so they can be put back later.
+    * The layers come in order, starting with the Input->Hidden rows
+    * (numIn + 1 per Neuron of the first hidden layer, the BIAS weight
+    * last) and ending with the Hidden->Output rows (one per output, as
+    * long as the last hidden layer).
+    * @param weights A buffer of at least getWeightCount() values
+    */
+    public void copyWeights(double[] weights){
+        int start = 0;
+        for (double[] layer : layerWeights){
+            System.arraycopy(layer, 0, weights, start, layer.length);
+            start += layer.length;
+        }
+    }
+
+    /**
+    * Puts back weights saved by copyWeights. The momentum belonged to the
+    * weights that are replaced, so it is cleared.
+    * @param weights The saved weights
+    */
+    public void setWeights(double[] weights){
+        if (weights.length < getWeightCount()){
+            throw new IllegalArgumentException("Expected " + getWeightCount() + " weights but got " + weights.length);
+        }
+        int start = 0;
+        for (int l = 0; l < layerWeights.length; l++){
+            System.arraycopy(weights, start, layerWeights[l], 0, layerWeights[l].length);
+            Arrays.fill(layerMomentum[l], 0.0);
+            start += layerWeights[l].length;
+        }
+    }
+
+    /**
+    * Forgets the last weight changes, so further training starts without
+    * momentum (for example when fine-tuning on new data)
+    */
+    public void clearMomentum(){
+        for (double[] momentum : layerMomentum){
+            Arrays.fill(momentum, 0.0);
+        }
+    }
+
+    /**
+    * Gets the size of the buffer calculate needs for the hidden and
+    * output values
+    * @return The number of hidden and output Neurons
+    */
+    public int getActivationSize(){
+        return numHidden + numOut;
+    }
+
+    /**
+    * Feeds an input through the NeuralNetwork. Only reads the weights.
+    * @param input The input values; a BIAS after them is ignored
+    * @param values Where every hidden value and then the output values are written
+    * @param sigmoid The activation function
+    */
+    private void forward(double[] input, double[] values, Activation sigmoid){
+        double[] inputWeights = layerWeights[0];
+        int inputRow = numIn + 1;
+        int firstSize = layerSizes[1];
+        for (int h = 0; h < firstSize; h++){
+            int row = h * inputRow;
+            double currentSum = KERNELS.dot(inputWeights, row, input, 0, numIn);
+            values[h] = currentSum + inputWeights[row + numIn] * BIAS;
+        }
+        sigmoid.apply(values, 0, firstSize);
+
+        for (int l = 1; l < layerWeights.length; l++){
+            double[] weights = layerWeights[l];
+            int rowLength = layerSizes[l];
+            int from = layerStart[l];
+            int start = layerStart[l + 1];
+            int size = layerSizes[l + 1];
+            for (int j = 0; j < size; j++){
+                values[start + j] = KERNELS.dot(weights, j * rowLength, values, from, rowLength);
             }
-            output.setValue(sigmoid(currentSum));
+            sigmoid.apply(values, start, size);
         }
     }
 
@@ -106,35 +490,216 @@ public class NeuralNetwork implements java.io.Serializable{
     * And : dP/dw1 = dP/dz * dp/dw1 = (d - z) * dz/dp2 * dp2/dw1 = (d - z) * dz/dp2 * dp2/dy * dy/dw1 = (d - z) * dz/dp2 * w2 * dy/dp1 * x
     * At the end: dP/dw2 = (d - z) * z * (1 - z) * y
     * 			   dP/dw1 = (d - z) * z * (1 - z) * w2 * y * (1 - y) * x
+    * With more hidden layers the same chain rule is followed one layer at
+    * a time (see findDeltas), and every weight changes by delta * x.
     */
     public void backProp(){
-        for (int i = 0; i < myOutput.size(); i++){
-            Neuron outputNeuron = myOutput.get(i);
-            double z = outputNeuron.getValue();			//Calculated Output
-            double d = myOutput.getExpectedOutput(i);	//Desired Output
-            for (Synapse w2Synapse : outputNeuron.getInputSynapses()){
-                double w2 = w2Synapse.getWeight();	//Second tier Synapse weight
-                double y = w2Synapse.getOrigin().getValue();	//Hidden Neuron value
-                double dPdw2 = (d - z) * z * (1.0 - z) * y;
-                for (Synapse w1Synapse : w2Synapse.getOrigin().getInputSynapses()){
-                    double w1 = w1Synapse.getWeight();			//First tier Synapse weight
-                    double x = w1Synapse.getOrigin().getValue();	//Input Neuron value
-                    double dPdw1 = (d - z) * z * (1.0 - z) * y * w2 * (1.0 - y) * x;
-                    w1Synapse.setWeight(w1 + dPdw1 * LEARNING_RATE + w1Synapse.getMomentum() * MOMENTUM);
-                    w1Synapse.setMomentum(dPdw1);
+        findDeltas();
+        for (int l = 0; l < layerWeights.length; l++){
+            int rowLength = rowLength(l);
+            double[] source = l == 0 ? myInputs : myValues;    //x = Input Neuron value, or y = hidden Neuron value
+            int sourceStart = l == 0 ? 0 : layerStart[l];
+            for (int j = 0; j < layerSizes[l + 1]; j++){
+                //dP/dw = delta * x
+                KERNELS.update(layerWeights[l], layerMomentum[l], j * rowLength, myDeltas[layerStart[l + 1] + j],
+                               source, sourceStart, rowLength, LEARNING_RATE, MOMENTUM);
+            }
+        }
+    }
+
+    /**
+    * Works out the delta of every Neuron, from the OutputLayer back,
+    * using the weights from before this update. The delta of an output
+    * Neuron is (d - z) * z * (1 - z), and the delta of a hidden Neuron y is
+    * the sum over the Neurons it feeds of (their delta * y * w), times (1 - y).
+    */
+    private void findDeltas(){
+        int last = layerSizes.length - 1;
+        int outputStart = layerStart[last];
+        for (int k = 0; k < numOut; k++){
+            double z = myValues[outputStart + k];	//Calculated Output
+            double d = myExpected[k];				//Desired Output
+            myDeltas[outputStart + k] = (d - z) * z * (1.0 - z);
+        }
+        for (int l = last - 1; l >= 1; l--){
+            double[] weights = layerWeights[l];
+            int size = layerSizes[l];
+            int start = layerStart[l];
+            int nextStart = layerStart[l + 1];
+            for (int h = 0; h < size; h++){
+                double y = myValues[start + h];		//Hidden Neuron value
+                double error = 0.0;
+                for (int k = 0; k < layerSizes[l + 1]; k++){
+                    error += myDeltas[nextStart + k] * y * weights[k * size + h];
                 }
-                w2Synapse.setWeight(w2 + dPdw2 * LEARNING_RATE + w2Synapse.getMomentum() * MOMENTUM);
-                w2Synapse.setMomentum(dPdw2);
+                myDeltas[start + h] = error * (1.0 - y);
+            }
+        }
+    }
+
+    /**
+    * Trains the NeuralNetwork for one pass over a training set in batches.
+    * The gradient of every IOTuple in a batch is accumulated and then one
+    * averaged weight/momentum update is made per batch. A batch size of 1
+    * is the same as calling backProp after every IOTuple, and a batch size
+    * of trainingSet.size() is full-batch gradient training.
+    * @param trainingSet The IOTuples to train on
+    * @param batchSize The number of IOTuples per weight update
+    */
+    public void train(List<IOTuple> trainingSet, int batchSize){
+        checkBatchSize(batchSize);
+        for (int start = 0; start < trainingSet.size(); start += batchSize){
+            int end = Math.min(start + batchSize, trainingSet.size());
+            clearGradient();
+            for (int j = start; j < end; j++){
+                newIO(trainingSet.get(j));
+                feedForward();
+                accumulateGradient();
+            }
+            applyGradient(end - start);
+        }
+    }
+
+    /**
+    * Trains the NeuralNetwork for one pass over rows of a MappedDataset in
+    * batches, in the order of the RowSet. See train(List, int).
+    * @param trainingSet The rows to train on
+    * @param batchSize The number of rows per weight update
+    */
+    public void train(RowSet trainingSet, int batchSize){
+        checkBatchSize(batchSize);
+        MappedDataset data = trainingSet.getData();
+        if (batchSize == 1){
+            // A batch of one is plain back-propagation, which skips the gradient buffers
+            for (int j = 0; j < trainingSet.size(); j++){
+                newIO(data, trainingSet.get(j));
+                feedForward();
+                backProp();
+            }
+            return;
+        }
+        for (int start = 0; start < trainingSet.size(); start += batchSize){
+            int end = Math.min(start + batchSize, trainingSet.size());
+            clearGradient();
+            for (int j = start; j < end; j++){
+                newIO(data, trainingSet.get(j));
+                feedForward();
+                accumulateGradient();
+            }
+            applyGradient(end - start);
+        }
+    }
+
+    /**
+    * Trains the NeuralNetwork for one pass over the rows of a Dataset in
+    * batches, in row order. See train(List, int). The rows are copied
+    * straight from the Dataset's primitive arrays and every input is range
+    * checked once up front, so after the first call no objects are
+    * created while training.
+    * @param trainingSet The rows to train on
+    * @param batchSize The number of rows per weight update
+    */
+    public void train(Dataset trainingSet, int batchSize){
+        checkBatchSize(batchSize);
+        if (trainingSet.numInputs() != numIn || trainingSet.numOutputs() != numOut){
+            throw new IllegalArgumentException("Expected " + numIn + " inputs and " + numOut + " outputs but got "
+                                               + trainingSet.numInputs() + " and " + trainingSet.numOutputs());
+        }
+        double[] inputs = trainingSet.getInputs();
+        double[] outputs = trainingSet.getOutputs();
+        for (int i = 0; i < inputs.length; i++){
+            checkValue(inputs[i]);
+        }
+        if (batchSize == 1){
+            // A batch of one is plain back-propagation, which skips the gradient buffers
+            for (int j = 0; j < trainingSet.size(); j++){
+                System.arraycopy(inputs, j * numIn, myInputs, 0, numIn);
+                System.arraycopy(outputs, j * numOut, myExpected, 0, numOut);
+                feedForward();
+                backProp();
+            }
+            return;
+        }
+        for (int start = 0; start < trainingSet.size(); start += batchSize){
+            int end = Math.min(start + batchSize, trainingSet.size());
+            clearGradient();
+            for (int j = start; j < end; j++){
+                System.arraycopy(inputs, j * numIn, myInputs, 0, numIn);
+                System.arraycopy(outputs, j * numOut, myExpected, 0, numOut);
+                feedForward();
+                accumulateGradient();
+            }
+            applyGradient(end - start);
+        }
+    }
+
+    /**
+    * Makes sure a batch holds at least one training example
+    * @param batchSize The number of examples per weight update
+    */
+    private void checkBatchSize(int batchSize){
+        if (batchSize < 1){
+            throw new IllegalArgumentException("The batch size (" + batchSize + ") must be at least 1.");
+        }
+    }
+
+    /**
+    * Sets the batch gradient back to zero, creating it the first time
+    */
+    private void clearGradient(){
+        if (layerGradient == null){
+            layerGradient = new double[layerWeights.length][];
+            for (int l = 0; l < layerWeights.length; l++){
+                layerGradient[l] = new double[layerWeights[l].length];
+            }
+        }
+        for (double[] gradient : layerGradient){
+            Arrays.fill(gradient, 0.0);
+        }
+    }
+
+    /**
+    * Adds the gradient of the current Input and Output pair to the batch
+    * gradient. Same derivation as backProp, but no weights are changed.
+    */
+    private void accumulateGradient(){
+        findDeltas();
+        for (int l = 0; l < layerWeights.length; l++){
+            int rowLength = rowLength(l);
+            double[] source = l == 0 ? myInputs : myValues;
+            int sourceStart = l == 0 ? 0 : layerStart[l];
+            for (int j = 0; j < layerSizes[l + 1]; j++){
+                KERNELS.axpy(myDeltas[layerStart[l + 1] + j], source, sourceStart, layerGradient[l], j * rowLength, rowLength);
+            }
+        }
+    }
+
+    /**
+    * Applies the averaged batch gradient to every weight
+    * @param batchCount The number of IOTuples in the batch
+    */
+    private void applyGradient(int batchCount){
+        for (int l = 0; l < layerWeights.length; l++){
+            double[] weights = layerWeights[l];
+            double[] momentum = layerMomentum[l];
+            double[] gradient = layerGradient[l];
+            for (int i = 0; i < weights.length; i++){
+                double dPdw = gradient[i] / batchCount;
+                weights[i] = weights[i] + dPdw * LEARNING_RATE + momentum[i] * MOMENTUM;
+                momentum[i] = dPdw;
             }
         }
     }
 
     /**
-    * The mathematically "convenient" sigmoid function. 
-    * @return Self explanitory
+    * Makes sure an input value can be held by an input Neuron
+    * @param value The new input value
+    * @return The same value if it is valid
     */
-    private double sigmoid(double sum){
-        return 1.0 / (1.0 + Math.exp(-sum));
+    private double checkValue(double value){
+        if (value <= 1.0 && value >= -1.0){
+            return value;
+        } else {throw new IllegalArgumentException("The value of this Neuron (" + value + ") is NOT valid.");}
     }
 
     /**
@@ -142,13 +707,13 @@ public class NeuralNetwork implements java.io.Serializable{
     * @return The expected output
     */
     public double getExpectedOutput(){
-        return myOutput.getExpectedOutput(0);
+        return myExpected[0];
     }
 
     /**
     * Gets the calculated value of this NeuralNetwork after an Input has been fed-forward
     */
     public double getCalculatedValue(){
-        return myOutput.get(0).getValue();
+        return myValues[numHidden];
     }
 }
@@ -0,0 +1,170 @@
+/**
+ * A resident Blood-Brain Barrier prediction service. The collection of
+ * neural networks and the input maxima and minima are loaded once, then
+ * compounds are predicted over a line protocol on localhost:
+ *
+ * predict x1 x2 ... xN   ->   yes|no yesVotes noVotes
+ * quit                   ->   (closes the connection)
+ *
+ * Anything that can't be predicted is answered with "error" and a reason.
+ * Each connection is served by its own worker thread for as long as it is
+ * open, so many queries can be answered at once. There are as many
+ * workers as threads: a connection made while every worker is busy is
+ * answered with "error" and closed straight away rather than left
+ * waiting, and a connection that sends nothing for the idle timeout is
+ * closed to free its worker.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PredictionServer{
+    private static final int IDLE_TIMEOUT = 60;    //Default seconds a connection may wait between requests
+    private Predictor myPredictor;
+    private int port;
+    private int numThreads;
+    private int idleTimeout = IDLE_TIMEOUT;
+    private AtomicInteger openConnections = new AtomicInteger();   //Connections being served by a worker
+
+    /**
+     * Starts the prediction service
+     * @param args Optional port, number of worker threads (the most
+     * connections open at once) and idle timeout in seconds
+     */
+    public static void main(String[] args){
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        try{
+            Predictor myPredictor = Predictor.read(Predictor.MODEL_FILE);
+            myPredictor.setFused(true);
+            PredictionServer myServer = new PredictionServer(myPredictor, port, threads);
+            if (args.length > 2){
+                myServer.setIdleTimeout(Integer.parseInt(args[2]));
+            }
+            myServer.serve();
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Creates a PredictionServer around a loaded Predictor
+     * @param predictor The loaded collection of neural networks
+     * @param serverPort The port to listen on
+     * @param threads Number of connections served at once; any more are refused
+     */
+    public PredictionServer(Predictor predictor, int serverPort, int threads){
+        if (threads < 1){
+            throw new IllegalArgumentException("The number of threads (" + threads + ") must be at least 1.");
+        }
+        myPredictor = predictor;
+        port = serverPort;
+        numThreads = threads;
+    }
+
+    /**
+     * Sets how long a connection may wait between requests before it is
+     * closed
+     * @param seconds The idle timeout, or 0 to keep idle connections open
+     */
+    public void setIdleTimeout(int seconds){
+        if (seconds < 0){
+            throw new IllegalArgumentException("The idle timeout (" + seconds + ") can't be negative.");
+        }
+        idleTimeout = seconds;
+    }
+
+    /**
+     * Accepts connections on localhost until the process is stopped. At
+     * most one connection per worker thread is open at once; any more are
+     * refused.
+     */
+    public void serve() throws IOException{
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())){
+            System.out.println("Predicting with " + myPredictor.numVoters() + " voters on port " + port
+                               + " (at most " + numThreads + " connections, idle timeout " + idleTimeout + " seconds)");
+            while (true){
+                Socket client = server.accept();
+                if (openConnections.incrementAndGet() > numThreads){
+                    openConnections.decrementAndGet();
+                    refuse(client);
+                    continue;
+                }
+                pool.submit(() -> {
+                    try{
+                        answer(client);
+                    } finally{
+                        openConnections.decrementAndGet();
+                    }
+                });
+            }
+        } finally{
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Tells a client every worker is busy and closes its connection
+     * @param client The connection
+     */
+    private void refuse(Socket client){
+        try (Socket connection = client;
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(connection.getOutputStream()))){
+            out.println("error the server is busy, " + numThreads + " connections are already open");
+        } catch (IOException e){
+            System.out.println("Lost a connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Answers every request sent over one connection, until the client
+     * quits or is idle for longer than the idle timeout
+     * @param client The connection
+     */
+    private void answer(Socket client){
+        try (Socket connection = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(connection.getOutputStream())))){
+            connection.setSoTimeout(idleTimeout * 1000);
+            String request;
+            while ((request = in.readLine()) != null){
+                String[] words = request.trim().split("\\s+");
+                if (words[0].equals("quit")){
+                    break;
+                }
+                out.println(respond(words));
+                out.flush();
+            }
+        } catch (SocketTimeoutException e){
+            System.out.println("Closed a connection idle for " + idleTimeout + " seconds");
+        } catch (IOException e){
+            System.out.println("Lost a connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the response to a single request
+     * @param words The request split on whitespace
+     * @return The response line
+     */
+    private String respond(String[] words){
+        if (!words[0].equals("predict")){
+            return "error unknown request: " + words[0];
+        }
+        try{
+            String[] inputs = new String[words.length - 1];
+            System.arraycopy(words, 1, inputs, 0, inputs.length);
+            return myPredictor.predict(Predictor.parseInputs(inputs)).toString();
+        } catch (IllegalArgumentException e){
+            return "error " + e.getMessage();
+        }
+    }
+}
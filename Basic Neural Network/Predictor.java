@@ -1,135 +1,520 @@
 /**
  * Application level Blood-Brain Barrier predictor
+ *
+ * A Predictor is saved as one binary model file (BBBPredictor.model)
+ * that holds everything needed to predict:
+ *
+ * magic "BBBM", version, input count, output count, voter count, hidden
+ * layer count, each hidden layer's size (ints, padded to a multiple of 8
+ * bytes), the minimum and then the maximum of each input, every voter's
+ * weights in the order NeuralNetwork.copyWeights writes them (doubles).
+ *
+ * Everything is little-endian. The file is memory-mapped to load it, so
+ * predictors on the same machine share its pages.
  * @author Lou Brand
  */
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.util.Arrays;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class Predictor{
+    public static final String MODEL_FILE = "BBBPredictor.model";
+    public static final int MAGIC = 0x4D424242; // "BBBM" read as a little-endian int
+    public static final int VERSION = 1;
     private ArrayList<NeuralNetwork> myVoters;
-    private ArrayList<Double> inputs;
-    
+    private double[] inputMin, inputMax;
+    private ThreadLocal<double[]> activations;  // Each thread's scratch buffer for the hidden and output values
+    private Activation sigmoid = Activation.EXACT;
+    private boolean earlyExit = false;          // Stop voting once the remaining voters can't change the result
+    private FusedEnsemble fused;                // Every voter stacked into one network, or null to run them one by one
+    private ThreadLocal<double[]> fusedScratch; // Each thread's scratch buffer for the fused network
+
     /**
      * Given a list of input parameters predict whether or not a compound
      * crosses the blood-brain barrier
      * @param args Input parameters calculated from Pybel in Cinfony
      */
     public static void main(String[] args){
-        Predictor myPredictor = new Predictor(args);
+        try{
+            Predictor myPredictor = Predictor.read(MODEL_FILE);
+            myPredictor.setEarlyExit(true);
+
+            if (myPredictor.predict(parseInputs(args)).passes()){
+                System.out.println("yes");
+            } else{
+                System.out.println("no");
+            }
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
     }
-    
+
     /**
-     * Constructor determines whether or not a compounds crosses the blood-
-     * brain barrier
-     * @param args Input parameters calculated from Pybel in Cinfony
+     * Loads the collection of pre-trained neural networks and the maximum
+     * and minimum of each input once, so any number of compounds can be
+     * predicted afterwards
+     * @param modelFile The serialized collection of neural networks
+     * @param maxMinFile The maximum and minimum of each input in the dataset
      */
-    public Predictor(String[] args){
-        try{
-            InputStream file = new FileInputStream("BBBPredictor.ser");
+    public Predictor(String modelFile, String maxMinFile) throws IOException, ClassNotFoundException{
+        try (InputStream file = new FileInputStream(modelFile)){
             InputStream buffer = new BufferedInputStream(file);
             ObjectInput input = new ObjectInputStream (buffer);
             myVoters = (ArrayList<NeuralNetwork>)input.readObject();
         }
-        catch(ClassNotFoundException ex){System.out.println("The class wasn't found!");}
-        catch(IOException ex){System.out.println("There was an error!");}
-                
-        IOTuple smilesInput = createIO(args);
-        
-        if (predict(smilesInput)){
-            System.out.println("yes");
-        } else{
-            System.out.println("no");
-        }
-    }
-    
-    /**
-     * Creates an IOTuple from a set of inputs
-     * @param inputs The input parameters
-     * @return currentIO The parameters of the compound
-     */
-    private IOTuple createIO(String[] inputs){
-        Input currentInput = processInput(inputs);
-        Output currentOutput = new Output(null);
-        IOTuple currentIO = new IOTuple(currentInput, currentOutput);
-        
-        return currentIO;
-    }
-    
-    /**
-     * Process the set of input parameters correctly
-       @param The input parameters calculated in Pybel
-     * @return currentInput Correctly normalized input
-     */
-    private Input processInput(String[] smilesInputs){
-        inputs = new ArrayList<Double>();
-        
-        for (String input : smilesInputs){
-            inputs.add(Double.parseDouble(input));
-        }
-        
-        Input currentInput = new Input(inputs);
-        normalizeInput(currentInput);
-        
-        return currentInput;
-    }
-    
-    /**
-     * Normalizes the Input based on our dataset's maximum and minimum values
-     * @param currentInput The input (not normalized) parameters
-     */
-    private void normalizeInput(Input currentInput){
-        ArrayList<Double> inputMax = new ArrayList<Double>();
-        ArrayList<Double> inputMin = new ArrayList<Double>();
+        readMaxMin(maxMinFile);
+        createBuffers();
+    }
+
+    /**
+     * Creates a Predictor from a collection of neural networks that is
+     * already in memory
+     * @param voters The trained neural networks
+     * @param minima The minimum of each input in the dataset
+     * @param maxima The maximum of each input in the dataset
+     */
+    public Predictor(ArrayList<NeuralNetwork> voters, double[] minima, double[] maxima){
+        myVoters = voters;
+        inputMin = minima;
+        inputMax = maxima;
+        createBuffers();
+    }
+
+    /**
+     * Reads a Predictor from a binary model file. The file is mapped into
+     * memory rather than copied through a stream, and each voter's weights
+     * are taken from it in one bulk get.
+     * @param filename The model file
+     * @return The Predictor
+     */
+    public static Predictor read(String filename) throws IOException{
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+            if (channel.size() > Integer.MAX_VALUE){
+                throw new IOException(filename + " is too large to map into memory");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < 6 * Integer.BYTES || buffer.getInt() != MAGIC){
+            throw new IOException(filename + " is not a model file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION){
+            throw new IOException(filename + " has model version " + version + ", expected " + VERSION);
+        }
+        int numIn = buffer.getInt();
+        int numOut = buffer.getInt();
+        int numVoters = buffer.getInt();
+        int numLayers = buffer.getInt();
+        if (numIn < 1 || numOut < 1 || numVoters < 1 || numLayers < 1
+                || buffer.remaining() < 4L * numLayers){
+            throw new IOException(filename + " has a broken header");
+        }
+        int[] sizes = new int[numLayers + 2];
+        sizes[0] = numIn;
+        long weightCount = 0;
+        for (int l = 1; l <= numLayers; l++){
+            sizes[l] = buffer.getInt();
+            if (sizes[l] < 1){
+                throw new IOException(filename + " has a broken header");
+            }
+        }
+        sizes[numLayers + 1] = numOut;
+        for (int l = 0; l <= numLayers; l++){
+            weightCount += (long)sizes[l + 1] * (l == 0 ? numIn + 1 : sizes[l]);
+        }
+        int headerBytes = headerBytes(numLayers);
+        if (buffer.capacity() != headerBytes + 8L * (2L * numIn + numVoters * weightCount)){
+            throw new IOException(filename + " has the wrong size for its header");
+        }
+
+        buffer.position(headerBytes);
+        DoubleBuffer values = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        double[] minima = new double[numIn];
+        double[] maxima = new double[numIn];
+        values.get(minima).get(maxima);
+        ArrayList<NeuralNetwork> voters = new ArrayList<NeuralNetwork>(numVoters);
+        double[] weights = new double[(int)weightCount];
+        for (int v = 0; v < numVoters; v++){
+            values.get(weights);
+            voters.add(new NeuralNetwork(sizes, weights));
+        }
+        return new Predictor(voters, minima, maxima);
+    }
+
+    /**
+     * Writes this Predictor, with the maximum and minimum of each input, to
+     * a binary model file
+     * @param filename The model file
+     */
+    public void write(String filename) throws IOException{
+        NeuralNetwork first = myVoters.get(0);
+        int[] hidden = first.getHiddenLayers();
+        int weightCount = first.getWeightCount();
+        for (NeuralNetwork currentNN : myVoters){
+            if (currentNN.getInputSize() != inputMin.length || currentNN.getOutputSize() != first.getOutputSize()
+                    || !Arrays.equals(currentNN.getHiddenLayers(), hidden)){
+                throw new IllegalArgumentException("Every voter must have the same layers to be saved in a model file!");
+            }
+        }
+        int headerBytes = headerBytes(hidden.length);
+        long size = headerBytes + 8L * (2L * inputMin.length + (long)myVoters.size() * weightCount);
+        if (size > Integer.MAX_VALUE){
+            throw new IOException("The model is too large to save in one file");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(inputMin.length).putInt(first.getOutputSize())
+              .putInt(myVoters.size()).putInt(hidden.length);
+        for (int layer : hidden){
+            buffer.putInt(layer);
+        }
+        buffer.position(headerBytes);
+        DoubleBuffer values = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        values.put(inputMin).put(inputMax);
+        double[] weights = new double[weightCount];
+        for (NeuralNetwork currentNN : myVoters){
+            currentNN.copyWeights(weights);
+            values.put(weights);
+        }
+        buffer.position(0);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Gets the size of a model file's header, padded so the doubles after
+     * it are aligned
+     * @param numLayers Number of hidden layers
+     * @return The number of header bytes
+     */
+    private static int headerBytes(int numLayers){
+        int bytes = (6 + numLayers) * Integer.BYTES;
+        return (bytes + 7) & ~7;
+    }
+
+    /**
+     * Sets up each thread's scratch buffer, big enough for any voter
+     */
+    private void createBuffers(){
+        int size = 0;
+        for (NeuralNetwork currentNN : myVoters){
+            size = Math.max(size, currentNN.getActivationSize());
+        }
+        final int activationSize = size;
+        activations = ThreadLocal.withInitial(() -> new double[activationSize]);
+    }
+
+    /**
+     * Chooses the activation function used to predict, for example a
+     * SigmoidTable to trade a small bounded error for speed
+     * @param activation The activation function
+     */
+    public void setActivation(Activation activation){
+        sigmoid = activation;
+    }
+
+    /**
+     * Chooses whether predict stops evaluating voters as soon as the
+     * remaining ones can no longer change the majority. The decision is
+     * the same either way, but the Vote only counts the voters that were
+     * evaluated.
+     * @param enabled True to stop early
+     */
+    public void setEarlyExit(boolean enabled){
+        earlyExit = enabled;
+    }
+
+    /**
+     * Chooses whether the voters are run as one FusedEnsemble, which is
+     * much faster when the whole vote is needed (early exit still runs
+     * them one by one). The fused weights are a copy: call this again
+     * after the voters change. Only voters with a single hidden layer of
+     * the same size can be fused; any others keep being run one by one,
+     * which gives the same votes.
+     * @param enabled True to fuse the voters when they can be
+     */
+    public void setFused(boolean enabled){
+        if (enabled && FusedEnsemble.supports(myVoters)){
+            FusedEnsemble ensemble = new FusedEnsemble(myVoters);
+            fusedScratch = ThreadLocal.withInitial(() -> new double[ensemble.getScratchSize()]);
+            fused = ensemble;
+        } else {
+            fused = null;
+            fusedScratch = null;
+        }
+    }
+
+    /**
+     * Checks whether the voters are being run as one FusedEnsemble
+     * @return True if they are fused
+     */
+    public boolean isFused(){
+        return fused != null;
+    }
+
+    /**
+     * Puts the voters that agree with the majority most often first, so
+     * that with early exit the majority is usually settled after the
+     * fewest voters. The order doesn't change any full vote.
+     * @param data The normalized compounds to measure agreement on
+     */
+    public void orderVoters(Dataset data){
+        int numIn = inputMin.length;
+        if (data.numInputs() != numIn){
+            throw new IllegalArgumentException("Expected " + numIn + " inputs but the dataset has " + data.numInputs());
+        }
+        int numVoters = myVoters.size();
+        double[] inputs = data.getInputs();
+        double[] query = new double[numIn];
+        double[] scratch = activations.get();
+        boolean[] votes = new boolean[numVoters];
+        int[] agreements = new int[numVoters];
+
+        for (int r = 0; r < data.size(); r++){
+            System.arraycopy(inputs, r * numIn, query, 0, numIn);
+            int yes = 0;
+            for (int v = 0; v < numVoters; v++){
+                votes[v] = myVoters.get(v).calculate(query, scratch, sigmoid) >= .5;
+                if (votes[v]){
+                    yes++;
+                }
+            }
+            boolean majority = new Vote(yes, numVoters - yes).passes();
+            for (int v = 0; v < numVoters; v++){
+                if (votes[v] == majority){
+                    agreements[v]++;
+                }
+            }
+        }
+
+        ArrayList<Integer> order = new ArrayList<Integer>();
+        for (int v = 0; v < numVoters; v++){
+            order.add(v);
+        }
+        order.sort((a, b) -> Integer.compare(agreements[b], agreements[a]));
+        ArrayList<NeuralNetwork> ordered = new ArrayList<NeuralNetwork>(numVoters);
+        for (int v : order){
+            ordered.add(myVoters.get(v));
+        }
+        myVoters.clear();
+        myVoters.addAll(ordered);
+    }
+
+    /**
+     * Reads the maximum and minimum of each input
+     * @param maxMinFile One "min max" line per input
+     */
+    private void readMaxMin(String maxMinFile) throws IOException{
+        ArrayList<Double> maxima = new ArrayList<Double>();
+        ArrayList<Double> minima = new ArrayList<Double>();
         String delimiter = " ";
         String lineIn;
-        
-        try{
-            BufferedReader br = new BufferedReader(new FileReader("inputMaxMin.txt"));
+
+        try (BufferedReader br = new BufferedReader(new FileReader(maxMinFile))){
             while((lineIn = br.readLine()) != null){
                 String[] splitMaxMin = lineIn.split(delimiter);
-                inputMin.add(Double.parseDouble(splitMaxMin[0]));
-                inputMax.add(Double.parseDouble(splitMaxMin[1]));
+                minima.add(Double.parseDouble(splitMaxMin[0]));
+                maxima.add(Double.parseDouble(splitMaxMin[1]));
             }
-        } catch (FileNotFoundException e){e.printStackTrace();}
-        catch (IOException e){e.printStackTrace();}
-        
-        for (int i = 0; i < inputMax.size(); i++){ 
-            currentInput.normalizeValue(inputMin.get(i), inputMax.get(i), i);
         }
+
+        inputMin = new double[minima.size()];
+        inputMax = new double[maxima.size()];
+        for (int i = 0; i < inputMin.length; i++){
+            inputMin[i] = minima.get(i);
+            inputMax[i] = maxima.get(i);
+        }
+    }
+
+    /**
+     * Parses the input parameters of a compound
+     * @param smilesInputs The input parameters calculated in Pybel
+     * @return The input parameters as numbers
+     */
+    public static double[] parseInputs(String[] smilesInputs){
+        double[] values = new double[smilesInputs.length];
+        for (int i = 0; i < values.length; i++){
+            values[i] = Double.parseDouble(smilesInputs[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Normalizes a set of inputs based on our dataset's maximum and
+     * minimum values
+     * @param rawInputs The input (not normalized) parameters
+     * @return normalized The parameters of the compound between [0, 1]
+     */
+    public double[] normalize(double[] rawInputs){
+        if (rawInputs.length != inputMin.length){
+            throw new IllegalArgumentException("Expected " + inputMin.length + " inputs but got " + rawInputs.length);
+        }
+        double[] normalized = new double[rawInputs.length];
+        for (int i = 0; i < normalized.length; i++){
+            double range = inputMax[i] - inputMin[i];
+            normalized[i] = (rawInputs[i] - inputMin[i])/range;
+        }
+        return normalized;
     }
-    
+
     /**
      * Predicts whether or not a compound enters the brain using a
-     * collection of pre-trained neural networks (Majority vote)
-     * @return True = Yes, False = No
+     * collection of pre-trained neural networks (Majority vote). Safe to
+     * call from many threads at once.
+     * @param rawInputs Input parameters calculated from Pybel in Cinfony
+     * @return The number of voters on each side (only those evaluated, if
+     * early exit is on)
      */
-    private boolean predict(IOTuple query){
-        int yes = 0; 
+    public Vote predict(double[] rawInputs){
+        return vote(normalize(rawInputs));
+    }
+
+    /**
+     * Predicts a compound whose input parameters are already normalized,
+     * like the rows of a Dataset. Safe to call from many threads at once.
+     * @param query The normalized input parameters
+     * @return The number of voters on each side (only those evaluated, if
+     * early exit is on)
+     */
+    public Vote vote(double[] query){
+        if (query.length != inputMin.length){
+            throw new IllegalArgumentException("Expected " + inputMin.length + " inputs but got " + query.length);
+        }
+        int numVoters = myVoters.size();
+        if (fused != null && !earlyExit){
+            int yes = fused.vote(query, fusedScratch.get(), sigmoid);
+            return new Vote(yes, numVoters - yes);
+        }
+        double[] scratch = activations.get();
+        int yes = 0;
         int no = 0;
-        
-        for (NeuralNetwork currentNN : myVoters){
-            currentNN.newIO(query);
-            currentNN.feedForward();
-            double calculated = currentNN.getCalculatedValue();
-            
+
+        for (int v = 0; v < numVoters; v++){
+            double calculated = myVoters.get(v).calculate(query, scratch, sigmoid);
+
             if (calculated >= .5){
                 yes++;
             } else{
                 no++;
             }
+
+            int remaining = numVoters - v - 1;
+            if (earlyExit && (yes > no + remaining || no >= yes + remaining)){
+                break; // Yes needs a strict majority, so a tie is already a no
+            }
+        }
+
+        return new Vote(yes, no);
+    }
+
+    /**
+     * Predicts a block of compounds at once. Every voter scores the whole
+     * block before the next voter runs, or with fused voters each compound
+     * is scored by all of them in one pass. Safe to call from many threads
+     * at once.
+     * @param rawInputs numRows rows of input (not normalized) parameters
+     * @param numRows Number of compounds in the block
+     * @param yesVotes Where the number of yes votes for each compound is
+     * written, or -1 if a compound is outside the range of the dataset
+     */
+    public void predictBlock(double[] rawInputs, int numRows, int[] yesVotes){
+        int numIn = inputMin.length;
+        if (rawInputs.length < numRows * numIn){
+            throw new IllegalArgumentException("Expected " + numRows * numIn + " inputs but got " + rawInputs.length);
         }
-        
-        if (yes > no){
-            return true;
-        } else{
-            return false;
+        double[] block = new double[numRows * numIn];
+        int hiddenSize = 0;
+        for (NeuralNetwork currentNN : myVoters){
+            hiddenSize = Math.max(hiddenSize, currentNN.getHiddenSize());
         }
+        double[] hiddens = new double[numRows * hiddenSize];
+        double[] results = new double[numRows];
+
+        for (int r = 0; r < numRows; r++){
+            yesVotes[r] = 0;
+            for (int i = 0; i < numIn; i++){
+                double range = inputMax[i] - inputMin[i];
+                double value = (rawInputs[r * numIn + i] - inputMin[i])/range;
+                if (!(value <= 1.0 && value >= -1.0)){
+                    yesVotes[r] = -1;
+                }
+                block[r * numIn + i] = value;
+            }
+        }
+
+        if (fused != null){
+            double[] query = new double[numIn];
+            double[] scratch = fusedScratch.get();
+            for (int r = 0; r < numRows; r++){
+                if (yesVotes[r] >= 0){
+                    System.arraycopy(block, r * numIn, query, 0, numIn);
+                    yesVotes[r] = fused.vote(query, scratch, sigmoid);
+                }
+            }
+            return;
+        }
+
+        for (NeuralNetwork currentNN : myVoters){
+            currentNN.calculateBlock(block, numRows, hiddens, results, sigmoid);
+            for (int r = 0; r < numRows; r++){
+                if (results[r] >= .5 && yesVotes[r] >= 0){
+                    yesVotes[r]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the collection of neural networks that vote on each compound
+     * @return myVoters The neural networks
+     */
+    public ArrayList<NeuralNetwork> getVoters(){
+        return myVoters;
+    }
+
+    /**
+     * Gets the minimum of each input parameter in our dataset
+     * @return inputMin The minima used to normalize
+     */
+    public double[] getInputMinima(){
+        return inputMin;
+    }
+
+    /**
+     * Gets the maximum of each input parameter in our dataset
+     * @return inputMax The maxima used to normalize
+     */
+    public double[] getInputMaxima(){
+        return inputMax;
+    }
+
+    /**
+     * Gets the number of neural networks that vote on each compound
+     * @return The number of voters
+     */
+    public int numVoters(){
+        return myVoters.size();
+    }
+
+    /**
+     * Gets the number of input parameters each compound needs
+     * @return The number of inputs
+     */
+    public int numInputs(){
+        return inputMin.length;
     }
 }
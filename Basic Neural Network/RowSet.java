@@ -0,0 +1,114 @@
+/**
+ * An ordered selection of rows from a MappedDataset. Shuffling and
+ * splitting a RowSet only moves row numbers around, so training and
+ * testing sets can be made without copying any compound.
+ * @author Lou Brand
+ */
+
+import java.util.Random;
+
+public class RowSet{
+    private MappedDataset myData;
+    private int[] myRows;
+    private int start, end;
+
+    /**
+     * Creates a RowSet of every row in a MappedDataset, in file order
+     * @param data The dataset
+     */
+    public RowSet(MappedDataset data){
+        myData = data;
+        myRows = new int[data.size()];
+        for (int i = 0; i < myRows.length; i++){
+            myRows[i] = i;
+        }
+        start = 0;
+        end = myRows.length;
+    }
+
+    /**
+     * Creates a RowSet that shares part of another RowSet's row numbers
+     * @param data The dataset
+     * @param rows The row numbers
+     * @param from The first index of rows in this RowSet
+     * @param to One past the last index of rows in this RowSet
+     */
+    private RowSet(MappedDataset data, int[] rows, int from, int to){
+        myData = data;
+        myRows = rows;
+        start = from;
+        end = to;
+    }
+
+    /**
+     * Randomizes the order of the rows in this RowSet. Like
+     * Collections.shuffle on a subList, this also reorders the RowSet it
+     * was taken from.
+     * @param rand The source of random numbers
+     */
+    public void shuffle(Random rand){
+        for (int i = end - start - 1; i > 0; i--){
+            int j = rand.nextInt(i + 1);
+            int temp = myRows[start + i];
+            myRows[start + i] = myRows[start + j];
+            myRows[start + j] = temp;
+        }
+    }
+
+    /**
+     * Gets part of this RowSet without copying it, like List.subList
+     * @param from The first index (inclusive)
+     * @param to The last index (exclusive)
+     * @return The rows between from and to
+     */
+    public RowSet subList(int from, int to){
+        if (from < 0 || to > size() || from > to){
+            throw new IndexOutOfBoundsException("Cannot take rows " + from + " to " + to + " of " + size());
+        }
+        return new RowSet(myData, myRows, start + from, start + to);
+    }
+
+    /**
+     * Joins this RowSet and another RowSet of the same dataset, for example
+     * the training rows on either side of a test fold
+     * @param other The rows that come after this RowSet's rows
+     * @return joined A new RowSet with both sets of rows
+     */
+    public RowSet concat(RowSet other){
+        if (other.myData != myData){
+            throw new IllegalArgumentException("Both RowSets must come from the same MappedDataset!");
+        }
+        int[] joined = new int[size() + other.size()];
+        System.arraycopy(myRows, start, joined, 0, size());
+        System.arraycopy(other.myRows, other.start, joined, size(), other.size());
+        return new RowSet(myData, joined, 0, joined.length);
+    }
+
+    /**
+     * Gets the dataset row number at an index of this RowSet
+     * @param i The index
+     * @return The row number in the MappedDataset
+     */
+    public int get(int i){
+        if (i < 0 || i >= size()){
+            throw new IndexOutOfBoundsException("Index " + i + " of " + size());
+        }
+        return myRows[start + i];
+    }
+
+    /**
+     * Gets the number of rows in this RowSet
+     * @return The size
+     */
+    public int size(){
+        return end - start;
+    }
+
+    /**
+     * Gets the MappedDataset these rows come from
+     * @return myData The dataset
+     */
+    public MappedDataset getData(){
+        return myData;
+    }
+}
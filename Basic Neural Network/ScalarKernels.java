@@ -0,0 +1,55 @@
+/**
+ * The plain Java loops for the neural network. Every value is worked out
+ * in the same order as the original feed-forward and back-propagation
+ * code, so results are reproducible to the bit.
+ * @author Lou Brand
+ */
+
+public class ScalarKernels implements Kernels{
+    public String getName(){
+        return "scalar";
+    }
+
+    public double dot(double[] a, int aStart, double[] b, int bStart, int length){
+        double sum = 0.0;
+        for (int i = 0; i < length; i++){
+            sum += a[aStart + i] * b[bStart + i];
+        }
+        return sum;
+    }
+
+    public float dot(float[] a, int aStart, float[] b, int bStart, int length){
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++){
+            sum += a[aStart + i] * b[bStart + i];
+        }
+        return sum;
+    }
+
+    public void sigmoid(double[] values, int start, int length){
+        for (int i = start; i < start + length; i++){
+            values[i] = 1.0 / (1.0 + Math.exp(-values[i]));
+        }
+    }
+
+    public void sigmoid(float[] values, int start, int length){
+        for (int i = start; i < start + length; i++){
+            values[i] = 1.0f / (1.0f + (float)Math.exp(-values[i]));
+        }
+    }
+
+    public void axpy(double scale, double[] x, int xStart, double[] y, int yStart, int length){
+        for (int i = 0; i < length; i++){
+            y[yStart + i] += scale * x[xStart + i];
+        }
+    }
+
+    public void update(double[] weights, double[] momentum, int start, double scale, double[] x, int xStart,
+                       int length, double rate, double moment){
+        for (int i = 0; i < length; i++){
+            double gradient = scale * x[xStart + i];
+            weights[start + i] = weights[start + i] + gradient * rate + momentum[start + i] * moment;
+            momentum[start + i] = gradient;
+        }
+    }
+}
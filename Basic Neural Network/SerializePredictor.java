@@ -1,12 +1,15 @@
 /**
  * Class that serializes the colleciton of neural networks used in the
- * online application
+ * online application. The collection is saved both as BBBPredictor.ser
+ * and, with the maximum and minimum of each input, as the model file the
+ * Predictor loads (BBBPredictor.model).
  * @author Lou Brand
  */
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
@@ -16,56 +19,59 @@ import java.io.*;
 public class SerializePredictor{
     private ArrayList<IOTuple> trainingData;
     private ArrayList<NeuralNetwork> myVoters;
+    private double[] inputMin, inputMax;
     private int epochs;
     private final double TOLERANCE = .5;
     private final int NUM_VOTERS = 21;
+    private final long SEED = 42; //Determines the order of our data
+    private EnsembleTrainer myTrainer;
+
+    /**
+     * Converts a collection saved before model files existed
+     * (BBBPredictor.ser and inputMaxMin.txt) into BBBPredictor.model, with
+     * the voters ordered for early exit on pybelData.bin
+     * @param args Not used
+     */
+    public static void main(String[] args){
+        try{
+            Predictor myPredictor = new Predictor("BBBPredictor.ser", "inputMaxMin.txt");
+            myPredictor.orderVoters(Dataset.read("pybelData.bin"));
+            myPredictor.write(Predictor.MODEL_FILE);
+            System.out.println("Model is saved in " + Predictor.MODEL_FILE);
+        }
+        catch(ClassNotFoundException ex){System.out.println("The class wasn't found!");}
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
     
     /**
      * Constructor takes in a training set and a number of training cycles
      * @param data The training set (in this case all our compounds)
+     * @param minima The minimum of each input, before normalizing
+     * @param maxima The maximum of each input, before normalizing
      * @param numEpochs Number of training (backpropagation) cycles
+     * @param trainer Trains the collection of voters
      */
-    public SerializePredictor(ArrayList<IOTuple> data, int numEpochs){
+    public SerializePredictor(ArrayList<IOTuple> data, double[] minima, double[] maxima, int numEpochs,
+                              EnsembleTrainer trainer){
         epochs = numEpochs;
         trainingData = data;
+        inputMin = minima;
+        inputMax = maxima;
+        myTrainer = trainer;
         
-        Collections.shuffle(trainingData); //Randomize the order of our data
+        Collections.shuffle(trainingData, new Random(SEED)); //Randomize the order of our data
         createVoters();
         serialize();
     }
     
     /**
      * Creates a collection of neural networks that will "vote" on whether
-     * they think a compound penetrates the blood-brain barrier
+     * they think a compound penetrates the blood-brain barrier, ordered so
+     * the voters that agree with the majority most often vote first
      */
     private void createVoters(){
-        myVoters = new ArrayList<NeuralNetwork>();
-        double stupification = 1/NUM_VOTERS; //We want to train each Neural Network with a handicap, this may have an effect on how well they work together as a team
-        
-        for (int i = 0; i < NUM_VOTERS; i++){
-            NeuralNetwork currentNN = new NeuralNetwork();
-            
-            currentNN.initialize(trainingData.get(0));
-            
-            List<IOTuple> leftTrainSet = trainingData.subList(0, (int)(i*trainingData.size()*stupification));
-            //Small subset of the data removed for stupification
-            List<IOTuple> rightTrainSet = trainingData.subList((int)((i+1)*trainingData.size()*stupification), trainingData.size());
-            
-            ArrayList<IOTuple> trainingSet = new ArrayList<IOTuple>();
-            trainingSet.addAll(leftTrainSet);
-            trainingSet.addAll(rightTrainSet);
-            
-            for (int j = 0; j < epochs; j++){
-                //System.out.println("Epoch: " + j);
-                for (IOTuple trainingIO : trainingSet){
-                    currentNN.newIO(trainingIO);
-                    currentNN.feedForward();
-                    currentNN.backProp();
-                }
-            }
-            
-            myVoters.add(currentNN);
-        }
+        myVoters = myTrainer.createVoters(trainingData, NUM_VOTERS, epochs);
+        new Predictor(myVoters, inputMin, inputMax).orderVoters(Dataset.fromIOTuples(trainingData));
     }
     
     /**
@@ -80,6 +86,9 @@ public class SerializePredictor{
             out.close();
             fileOut.close();
             System.out.println("Serialized data is saved in " + serial);
+
+            new Predictor(myVoters, inputMin, inputMax).write(Predictor.MODEL_FILE);
+            System.out.println("Model is saved in " + Predictor.MODEL_FILE);
         }catch(IOException i){i.printStackTrace();}
     }
 }
@@ -0,0 +1,150 @@
+/**
+ * A fast sigmoid: a precomputed table of sigmoid values with linear
+ * interpolation between them, so no Math.exp is needed. Outside of
+ * [-range, range] the sigmoid is within maxError of 0 or 1 and the value
+ * at the edge of the table is used. Inside, the table spacing h is chosen
+ * so the interpolation error, at most h ^ 2 / 8 * max|sigmoid''|, stays
+ * below maxError as well.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+
+public class SigmoidTable implements Activation{
+    private static final double MAX_SECOND_DERIVATIVE = Math.sqrt(3.0) / 18.0; // max|sigmoid''|, at x = +/-ln(2 + sqrt(3))
+    private double maxError;
+    private double range;
+    private double scale;       // Table entries per unit of x
+    private double[] table;
+
+    /**
+     * Measures a SigmoidTable's error and checks that it doesn't change the
+     * majority vote on any compound of the dataset
+     * @param args Optional error bound (1e-4), model file (BBBPredictor.model)
+     * and dataset file (pybelData.bin)
+     */
+    public static void main(String[] args){
+        double bound = args.length > 0 ? Double.parseDouble(args[0]) : 1e-4;
+        String modelFile = args.length > 1 ? args[1] : Predictor.MODEL_FILE;
+        String dataFile = args.length > 2 ? args[2] : "pybelData.bin";
+
+        try{
+            ArrayList<NeuralNetwork> voters = Predictor.read(modelFile).getVoters();
+            SigmoidTable myTable = new SigmoidTable(bound);
+            System.out.println("Table of " + myTable.size() + " values over [-" + myTable.range + ", " + myTable.range
+                               + "], measured error " + myTable.measureError() + " (bound " + bound + ")");
+
+            int mismatches = myTable.compareVotes(voters, Dataset.read(dataFile));
+            if (mismatches > 0){
+                System.out.println("The table changes the vote on " + mismatches + " compounds!");
+            } else {
+                System.out.println("The table gives the same vote on every compound");
+            }
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Builds a table that is never further than maxError from the sigmoid
+     * @param error The largest difference allowed from the exact sigmoid
+     */
+    public SigmoidTable(double error){
+        if (!(error > 0.0 && error < .5)){
+            throw new IllegalArgumentException("The error bound (" + error + ") must be between 0 and .5");
+        }
+        maxError = error;
+        range = Math.log(1.0 / maxError);   // 1 - sigmoid(range) < e ^ -range = maxError
+        double spacing = .9 * Math.sqrt(8.0 * maxError / MAX_SECOND_DERIVATIVE); // Leaves room for rounding
+        int steps = (int)Math.ceil(2.0 * range / spacing);
+        scale = steps / (2.0 * range);
+        table = new double[steps + 1];
+        for (int k = 0; k <= steps; k++){
+            table[k] = 1.0 / (1.0 + Math.exp(-(k / scale - range)));
+        }
+    }
+
+    public void apply(double[] values, int start, int length){
+        int last = table.length - 1;
+        for (int i = start; i < start + length; i++){
+            double x = values[i];
+            if (x <= -range){
+                values[i] = table[0];
+            } else if (x >= range){
+                values[i] = table[last];
+            } else {
+                double position = (x + range) * scale;
+                int k = Math.min((int)position, last - 1);
+                double fraction = position - k;
+                values[i] = table[k] + (table[k + 1] - table[k]) * fraction;
+            }
+        }
+    }
+
+    /**
+     * Finds the largest difference from the exact sigmoid by sampling
+     * densely over twice the range of the table
+     * @return The largest error found
+     */
+    public double measureError(){
+        int samples = 1_000_000;
+        double[] x = new double[1];
+        double worst = 0.0;
+        for (int s = 0; s <= samples; s++){
+            x[0] = -2.0 * range + 4.0 * range * s / samples;
+            double exact = 1.0 / (1.0 + Math.exp(-x[0]));
+            apply(x, 0, 1);
+            worst = Math.max(worst, Math.abs(x[0] - exact));
+        }
+        return worst;
+    }
+
+    /**
+     * Counts the compounds of a dataset whose majority vote is different
+     * with this table than with the exact sigmoid
+     * @param voters The trained neural networks
+     * @param data The normalized compounds
+     * @return The number of compounds with a different majority vote
+     */
+    public int compareVotes(ArrayList<NeuralNetwork> voters, Dataset data){
+        int numIn = data.numInputs();
+        double[] inputs = data.getInputs();
+        double[] input = new double[numIn];
+        double[] activations = new double[voters.get(0).getActivationSize()];
+        int mismatches = 0;
+
+        for (int r = 0; r < data.size(); r++){
+            System.arraycopy(inputs, r * numIn, input, 0, numIn);
+            int exactYes = 0;
+            int tableYes = 0;
+            for (NeuralNetwork currentNN : voters){
+                if (currentNN.calculate(input, activations) >= .5){
+                    exactYes++;
+                }
+                if (currentNN.calculate(input, activations, this) >= .5){
+                    tableYes++;
+                }
+            }
+            if (new Vote(exactYes, voters.size() - exactYes).passes() != new Vote(tableYes, voters.size() - tableYes).passes()){
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Gets the largest difference allowed from the exact sigmoid
+     * @return maxError The error bound
+     */
+    public double getMaxError(){
+        return maxError;
+    }
+
+    /**
+     * Gets the number of values in the table
+     * @return The table size
+     */
+    public int size(){
+        return table.length;
+    }
+}
@@ -1,35 +1,42 @@
 /**
  * Class that tests the effectiveness of the voting neural network
- * architecture
+ * architecture. The testing and training sets are RowSet views over a
+ * MappedDataset, so a new split copies no compounds.
  * @author Lou Brand
  */
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Random;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
 public class SurveyTest{
-    private ArrayList<IOTuple> allData;
-    private List<IOTuple> testingData;
-    private List<IOTuple> trainingData;
+    private MappedDataset myData;
+    private RowSet allData;
+    private RowSet testingData;
+    private RowSet trainingData;
     private ArrayList<NeuralNetwork> myVoters;
     private int epochs;
     private final double TOLERANCE = .5;
     private int NUM_VOTERS;
+    private final long SEED = 42; //Determines the order of our data in every test
+    private Random rand = new Random(SEED);
+    private EnsembleTrainer myTrainer;
     
     /**
      * Creates an object to test the effectiveness of a neural network
      * voting architecture
      * @param data The data we will be testing on
      * @param numEpochs the number of training (backpropagation) cycles
+     * @param trainer Trains each collection of voters
      */
-    public SurveyTest(ArrayList<IOTuple> data, int numEpochs){
+    public SurveyTest(MappedDataset data, int numEpochs, EnsembleTrainer trainer){
         epochs = numEpochs;
-        allData = data;
+        myData = data;
+        allData = new RowSet(data);
+        myTrainer = trainer;
         test();
         //testVotersAndWrite();
         //testEpochsAndWrite();
@@ -44,7 +51,7 @@ public class SurveyTest{
         int setAside = (int)(percentSetAside * allData.size());
         
         for (int i = 0; i < 100; i++){
-            Collections.shuffle(allData); //Randomize the order of our data
+            allData.shuffle(rand); //Randomize the order of our data
             testingData = allData.subList(0, setAside); //Set aside 5% of the data for testing purposes
             trainingData = allData.subList(setAside, allData.size());
             createVoters(epochs);
@@ -67,7 +74,7 @@ public class SurveyTest{
                 int setAside = (int)(percentSetAside * allData.size());
                 
                 for (int i = 0; i < 100; i++){
-                    Collections.shuffle(allData); //Randomize the order of our data
+                    allData.shuffle(rand); //Randomize the order of our data
                     testingData = allData.subList(0, setAside); //Set aside 5% of the data for testing purposes
                     trainingData = allData.subList(setAside, allData.size());
                     createVoters(epochs);
@@ -100,7 +107,7 @@ public class SurveyTest{
             
             for (int k = 1; k < 600; k = 2*k){
                 for (int i = 0; i < 1; i++){
-                    Collections.shuffle(allData); //Randomize the order of our data
+                    allData.shuffle(rand); //Randomize the order of our data
                     testingData = allData.subList(0, setAside); //Set aside 5% of the data for testing purposes
                     trainingData = allData.subList(setAside, allData.size());
                     createVoters(k);
@@ -122,37 +129,13 @@ public class SurveyTest{
      */
     private void createVoters(int epo){
         epochs = epo;
-        myVoters = new ArrayList<NeuralNetwork>();
-        double stupification = 1/NUM_VOTERS; //We want to train each Neural Network with a handicap, this may have an effect on how well they work together as a team
-        
-        for (int i = 0; i < NUM_VOTERS; i++){
-            NeuralNetwork currentNN = new NeuralNetwork();
-            
-            currentNN.initialize(allData.get(0));
-            
-            List<IOTuple> leftTrainSet = trainingData.subList(0, (int)(i*trainingData.size()*stupification));
-            //Small subset of the data removed for stupification
-            List<IOTuple> rightTrainSet = trainingData.subList((int)((i+1)*trainingData.size()*stupification), trainingData.size());
-            
-            ArrayList<IOTuple> trainingSet = new ArrayList<IOTuple>();
-            trainingSet.addAll(leftTrainSet);
-            trainingSet.addAll(rightTrainSet);
-            
-            for (int j = 0; j < epochs; j++){
-                //System.out.println("Epoch: " + j);
-                for (IOTuple trainingIO : trainingSet){
-                    currentNN.newIO(trainingIO);
-                    currentNN.feedForward();
-                    currentNN.backProp();
-                }
-            }
-            
-            myVoters.add(currentNN);
-        }
+        myVoters = myTrainer.createVoters(trainingData, NUM_VOTERS, epochs);
     }
 
     /**
-     * Tests how well the voting architecture works
+     * Tests how well the voting architecture works. The Predictor stops
+     * asking voters once the rest can't change the majority, and the
+     * average number of voters it asked is printed.
      * @return percentRight The percentage of right predictions from our
      * neural network voting architecture
      */
@@ -165,23 +148,18 @@ public class SurveyTest{
         int trueNegative = 0;
         int falseNegative = 0;
         
-        for (IOTuple testingIO : testingData){
-            int yes = 0; //Yes this compound passes through the BBB
-            int no = 0; //No, this compound doesn't pass through the BBB
-            for (NeuralNetwork currentNN : myVoters){
-                currentNN.newIO(testingIO);
-                currentNN.feedForward();
-                double calculated = currentNN.getCalculatedValue();
-                if (calculated >= .5){
-                    yes++;
-                } else {
-                    no++;
-                }
-            }
+        Predictor myPredictor = new Predictor(myVoters, myData.getInputMinima(), myData.getInputMaxima());
+        myPredictor.setEarlyExit(true);
+        int evaluated = 0; //Voters evaluated over every compound
+        
+        for (int t = 0; t < testingData.size(); t++){
+            int row = testingData.get(t);
+            Vote currentVote = myPredictor.vote(toArray(myData, row));
+            evaluated += currentVote.getEvaluated();
             
-            double expected = testingIO.getOutput().getOutputs().get(0);
+            double expected = myData.getOutput(row, 0);
             
-            if (yes > no){
+            if (currentVote.passes()){
                 if (expected == 1.0){
                     numRight++;
                     truePositive++;
@@ -204,6 +182,7 @@ public class SurveyTest{
 	    double percentRight = (double)numRight/(double)testingData.size()*100;
         System.out.println(percentRight + "% Right");
         System.out.println("Num Right: " + numRight);
+        System.out.println("Voters evaluated per compound: " + (double)evaluated/(double)testingData.size() + " of " + myVoters.size());
         
         // Sensitivity and Specificity Datapoints
         /*System.out.println("Positive Predictive Value: " + (double)truePositive/(double)(truePositive + falsePositive));
@@ -214,4 +193,18 @@ public class SurveyTest{
 	    
         return percentRight;
     }
+    
+    /**
+     * Copies the input values of a row into an array
+     * @param data The dataset
+     * @param row The row
+     * @return values The input values
+     */
+    private static double[] toArray(MappedDataset data, int row){
+        double[] values = new double[data.numInputs()];
+        for (int i = 0; i < values.length; i++){
+            values[i] = data.getInput(row, i);
+        }
+        return values;
+    }
 }
@@ -0,0 +1,227 @@
+/**
+ * Updates the collection of pre-trained neural networks with newly
+ * labeled compounds instead of retraining it from scratch. The delta file
+ * has the same format as pybelData.txt (a line of raw input parameters,
+ * then a line with 1 if the compound crosses the blood-brain barrier or
+ * 0 if it doesn't). The new compounds are normalized with the maximum and
+ * minimum saved in the model file, mixed with an equal number of compounds drawn
+ * from pybelData.bin so the voters don't forget what they already know,
+ * and every voter is trained on them for a few epochs. The cost grows
+ * with the size of the delta, not with the size of the dataset.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class UpdatePredictor{
+    private static final int EPOCHS = 10;       //Default training cycles over the new compounds
+    private static final int REPLAY = 1;        //Old compounds rehearsed per new compound
+    private static final long SEED = 42;        //Determines which old compounds are rehearsed
+    private Predictor myPredictor;
+    private EnsembleTrainer myTrainer;
+    private Dataset corpus;                     //The compounds the voters were trained on, or null
+    private ArrayList<double[]> rawInputs = new ArrayList<double[]>();
+    private ArrayList<Double> labels = new ArrayList<Double>();
+
+    /**
+     * Fine-tunes BBBPredictor.model with a delta file and saves the result
+     * as a new model file
+     * @param args The delta file, the new model file, and optionally the
+     * number of epochs and worker threads
+     */
+    public static void main(String[] args){
+        if (args.length < 2){
+            System.out.println("Usage: java UpdatePredictor delta.txt BBBPredictor.new.model [epochs] [threads]");
+            return;
+        }
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : EPOCHS;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        try{
+            Predictor myPredictor = Predictor.read(Predictor.MODEL_FILE);
+            Dataset corpus = new File("pybelData.bin").exists() ? Dataset.read("pybelData.bin") : null;
+            if (corpus != null && !fits(myPredictor, corpus)){
+                System.out.println("pybelData.bin has " + corpus.numInputs() + " inputs and " + corpus.numOutputs()
+                                   + " outputs per compound, but " + Predictor.MODEL_FILE + " takes " + myPredictor.numInputs()
+                                   + " inputs and " + numOutputs(myPredictor) + " outputs");
+                return;
+            }
+            UpdatePredictor myUpdate = new UpdatePredictor(myPredictor, new EnsembleTrainer(threads, SEED), corpus);
+            myUpdate.readDelta(args[0]);
+            myUpdate.update(epochs);
+            myUpdate.save(args[1]);
+        }
+        catch(IOException ex){System.out.println("There was an error!");}
+    }
+
+    /**
+     * Creates an UpdatePredictor around a loaded collection of neural networks
+     * @param predictor The loaded collection, which is updated in place
+     * @param trainer Trains the voters on the worker threads
+     * @param data The normalized compounds the voters were trained on, or
+     * null to train on the new compounds alone
+     */
+    public UpdatePredictor(Predictor predictor, EnsembleTrainer trainer, Dataset data){
+        if (data != null && !fits(predictor, data)){
+            throw new IllegalArgumentException("The dataset has " + data.numInputs() + " inputs and " + data.numOutputs()
+                                               + " outputs but the voters take " + predictor.numInputs() + " and "
+                                               + numOutputs(predictor));
+        }
+        myPredictor = predictor;
+        myTrainer = trainer;
+        corpus = data;
+    }
+
+    /**
+     * Checks that a dataset's compounds have the shape the voters were
+     * trained on
+     * @param predictor The loaded collection
+     * @param data The normalized compounds
+     * @return True if every voter takes the dataset's inputs and outputs
+     */
+    private static boolean fits(Predictor predictor, Dataset data){
+        return data.numInputs() == predictor.numInputs() && data.numOutputs() == numOutputs(predictor);
+    }
+
+    /**
+     * Gets the number of outputs of the collection's voters
+     * @param predictor The loaded collection
+     * @return The size of each voter's OutputLayer
+     */
+    private static int numOutputs(Predictor predictor){
+        return predictor.getVoters().get(0).getOutputSize();
+    }
+
+    /**
+     * Reads the newly labeled compounds. Compounds too far outside the
+     * range of our dataset to be normalized are skipped.
+     * @param deltaFile The new compounds, in the format of pybelData.txt
+     */
+    public void readDelta(String deltaFile) throws IOException{
+        try (NumberLineReader reader = new NumberLineReader(new FileInputStream(deltaFile), (byte)'\t')){
+            int length;
+            while ((length = reader.readLine()) != -1){
+                if (length == 0){
+                    continue; //Skip blank lines
+                }
+                int inputLine = reader.getLineNumber();
+                if (length != myPredictor.numInputs()){
+                    throw new IllegalArgumentException("Expected " + myPredictor.numInputs() + " inputs on line " + inputLine
+                                                       + " but got " + length);
+                }
+                double[] inputs = java.util.Arrays.copyOf(reader.getValues(), length);
+                if (reader.readLine() != 1){
+                    throw new IllegalArgumentException("Expected a single 0 or 1 label on line " + reader.getLineNumber());
+                }
+                double label = reader.getValues()[0];
+                if (label != 0.0 && label != 1.0){
+                    throw new IllegalArgumentException("The label on line " + reader.getLineNumber() + " must be 0 or 1");
+                }
+
+                try{
+                    double[] normalized = myPredictor.normalize(inputs);
+                    for (double value : normalized){
+                        if (!(value <= 1.0 && value >= -1.0)){
+                            throw new IllegalArgumentException("it is outside the range of our dataset");
+                        }
+                    }
+                } catch (IllegalArgumentException e){
+                    System.out.println("Skipped the compound on line " + inputLine + ": " + e.getMessage());
+                    continue;
+                }
+                rawInputs.add(inputs);
+                labels.add(label);
+            }
+        }
+        System.out.println("Read " + rawInputs.size() + " new compounds from " + deltaFile);
+    }
+
+    /**
+     * Fine-tunes every voter on the new compounds (and the rehearsed old
+     * ones) and reports how many new compounds are predicted right before
+     * and after
+     * @param epochs Number of training cycles over the new compounds
+     */
+    public void update(int epochs){
+        if (rawInputs.isEmpty()){
+            throw new IllegalArgumentException("There are no new compounds to train on!");
+        }
+        long startTime = System.nanoTime();
+        System.out.println("New compounds predicted right before: " + numRight() + "/" + rawInputs.size());
+
+        Dataset trainingSet = createTrainingSet();
+        myTrainer.fineTune(myPredictor.getVoters(), trainingSet, epochs);
+
+        System.out.println("New compounds predicted right after: " + numRight() + "/" + rawInputs.size());
+        System.out.println("Fine-tuned " + myPredictor.numVoters() + " voters on " + trainingSet.size() + " compounds for "
+                           + epochs + " epochs in " + (System.nanoTime() - startTime) / 1e9 + " seconds");
+    }
+
+    /**
+     * Saves the updated collection of neural networks as a new model file
+     * @param modelFile Where the new model is written
+     */
+    public void save(String modelFile) throws IOException{
+        myPredictor.write(modelFile);
+        System.out.println("Updated model is saved in " + modelFile);
+    }
+
+    /**
+     * Normalizes the new compounds and mixes them with randomly drawn old
+     * compounds, in a random order
+     * @return The rows to fine-tune on
+     */
+    private Dataset createTrainingSet(){
+        Random rand = new Random(SEED);
+        int numIn = myPredictor.numInputs();
+        int numNew = rawInputs.size();
+        int numOld = corpus == null ? 0 : Math.min(REPLAY * numNew, corpus.size());
+        int rows = numNew + numOld;
+        double[] inputs = new double[rows * numIn];
+        double[] outputs = new double[rows];
+
+        for (int r = 0; r < numNew; r++){
+            System.arraycopy(myPredictor.normalize(rawInputs.get(r)), 0, inputs, r * numIn, numIn);
+            outputs[r] = labels.get(r);
+        }
+        for (int r = numNew; r < rows; r++){
+            int old = rand.nextInt(corpus.size());
+            System.arraycopy(corpus.getInputs(), old * numIn, inputs, r * numIn, numIn);
+            outputs[r] = corpus.getOutputs()[old];
+        }
+
+        // Shuffle the rows so new and old compounds are interleaved
+        double[] swap = new double[numIn];
+        for (int r = rows - 1; r > 0; r--){
+            int other = rand.nextInt(r + 1);
+            System.arraycopy(inputs, r * numIn, swap, 0, numIn);
+            System.arraycopy(inputs, other * numIn, inputs, r * numIn, numIn);
+            System.arraycopy(swap, 0, inputs, other * numIn, numIn);
+            double label = outputs[r];
+            outputs[r] = outputs[other];
+            outputs[other] = label;
+        }
+
+        double[] outMin = {0.0};
+        double[] outMax = {1.0};
+        return new Dataset(rows, numIn, 1, inputs, outputs, myPredictor.getInputMinima(),
+                           myPredictor.getInputMaxima(), outMin, outMax);
+    }
+
+    /**
+     * Counts the new compounds the collection currently predicts right
+     * @return The number predicted right
+     */
+    private int numRight(){
+        int right = 0;
+        for (int r = 0; r < rawInputs.size(); r++){
+            boolean crosses = labels.get(r) >= .5;
+            if (myPredictor.predict(rawInputs.get(r)).passes() == crosses){
+                right++;
+            }
+        }
+        return right;
+    }
+}
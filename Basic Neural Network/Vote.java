@@ -0,0 +1,69 @@
+/**
+ * The result of the collection of neural networks voting on whether a
+ * compound crosses the blood-brain barrier
+ * @author Lou Brand
+ */
+
+public class Vote{
+    private int yes;
+    private int no;
+
+    /**
+     * Creates a Vote from the number of voters on each side
+     * @param yesVotes Voters that think the compound crosses the BBB
+     * @param noVotes Voters that think the compound doesn't cross the BBB
+     */
+    public Vote(int yesVotes, int noVotes){
+        yes = yesVotes;
+        no = noVotes;
+    }
+
+    /**
+     * Checks whether the majority thinks the compound crosses the BBB
+     * @return True = Yes, False = No
+     */
+    public boolean passes(){
+        return yes > no;
+    }
+
+    /**
+     * Gets the number of yes votes
+     * @return yes The yes votes
+     */
+    public int getYes(){
+        return yes;
+    }
+
+    /**
+     * Gets the number of no votes
+     * @return no The no votes
+     */
+    public int getNo(){
+        return no;
+    }
+
+    /**
+     * Gets the number of voters that were evaluated, which is less than
+     * the size of the collection when voting stopped early
+     * @return The yes and no votes together
+     */
+    public int getEvaluated(){
+        return yes + no;
+    }
+
+    /**
+     * Gets the fraction of the voters that voted yes
+     * @return The fraction of yes votes between [0, 1]
+     */
+    public double getYesFraction(){
+        return (double)yes/(double)(yes + no);
+    }
+
+    /**
+     * Writes the Vote as "yes" or "no" followed by the yes and no votes
+     * @return The Vote as text
+     */
+    public String toString(){
+        return (passes() ? "yes" : "no") + " " + yes + " " + no;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * The neural network loops written with the JDK Vector API, so each
+ * instruction works on a whole vector register of values (4 or 8 doubles,
+ * 8 or 16 floats depending on the CPU). Values past the last full vector
+ * are handled one at a time.
+ *
+ * This class lives in its own folder because it needs the incubator
+ * module to compile. From the Basic Neural Network folder:
+ *
+ * javac --add-modules jdk.incubator.vector -d . simd/VectorKernels.java
+ *
+ * Kernels.get() then picks it up whenever the JVM is started with
+ * --add-modules jdk.incubator.vector.
+ * @author Lou Brand
+ */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorKernels implements Kernels{
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    public String getName(){
+        return "vector (" + DOUBLES.length() + " doubles, " + FLOATS.length() + " floats)";
+    }
+
+    public double dot(double[] a, int aStart, double[] b, int bStart, int length){
+        DoubleVector sums = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (; i < DOUBLES.loopBound(length); i += DOUBLES.length()){
+            DoubleVector va = DoubleVector.fromArray(DOUBLES, a, aStart + i);
+            DoubleVector vb = DoubleVector.fromArray(DOUBLES, b, bStart + i);
+            sums = va.fma(vb, sums);
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++){
+            sum += a[aStart + i] * b[bStart + i];
+        }
+        return sum;
+    }
+
+    public float dot(float[] a, int aStart, float[] b, int bStart, int length){
+        FloatVector sums = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i < FLOATS.loopBound(length); i += FLOATS.length()){
+            FloatVector va = FloatVector.fromArray(FLOATS, a, aStart + i);
+            FloatVector vb = FloatVector.fromArray(FLOATS, b, bStart + i);
+            sums = va.fma(vb, sums);
+        }
+        float sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++){
+            sum += a[aStart + i] * b[bStart + i];
+        }
+        return sum;
+    }
+
+    public void sigmoid(double[] values, int start, int length){
+        int i = 0;
+        for (; i < DOUBLES.loopBound(length); i += DOUBLES.length()){
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, values, start + i);
+            DoubleVector.broadcast(DOUBLES, 1.0).div(v.neg().lanewise(VectorOperators.EXP).add(1.0))
+                        .intoArray(values, start + i);
+        }
+        for (; i < length; i++){
+            values[start + i] = 1.0 / (1.0 + Math.exp(-values[start + i]));
+        }
+    }
+
+    public void sigmoid(float[] values, int start, int length){
+        int i = 0;
+        for (; i < FLOATS.loopBound(length); i += FLOATS.length()){
+            FloatVector v = FloatVector.fromArray(FLOATS, values, start + i);
+            FloatVector.broadcast(FLOATS, 1.0f).div(v.neg().lanewise(VectorOperators.EXP).add(1.0f))
+                       .intoArray(values, start + i);
+        }
+        for (; i < length; i++){
+            values[start + i] = 1.0f / (1.0f + (float)Math.exp(-values[start + i]));
+        }
+    }
+
+    public void axpy(double scale, double[] x, int xStart, double[] y, int yStart, int length){
+        int i = 0;
+        for (; i < DOUBLES.loopBound(length); i += DOUBLES.length()){
+            DoubleVector vx = DoubleVector.fromArray(DOUBLES, x, xStart + i);
+            DoubleVector vy = DoubleVector.fromArray(DOUBLES, y, yStart + i);
+            vy.add(vx.mul(scale)).intoArray(y, yStart + i);
+        }
+        for (; i < length; i++){
+            y[yStart + i] += scale * x[xStart + i];
+        }
+    }
+
+    public void update(double[] weights, double[] momentum, int start, double scale, double[] x, int xStart,
+                       int length, double rate, double moment){
+        int i = 0;
+        for (; i < DOUBLES.loopBound(length); i += DOUBLES.length()){
+            DoubleVector gradient = DoubleVector.fromArray(DOUBLES, x, xStart + i).mul(scale);
+            DoubleVector w = DoubleVector.fromArray(DOUBLES, weights, start + i);
+            DoubleVector m = DoubleVector.fromArray(DOUBLES, momentum, start + i);
+            w.add(gradient.mul(rate)).add(m.mul(moment)).intoArray(weights, start + i);
+            gradient.intoArray(momentum, start + i);
+        }
+        for (; i < length; i++){
+            double gradient = scale * x[xStart + i];
+            weights[start + i] = weights[start + i] + gradient * rate + momentum[start + i] * moment;
+            momentum[start + i] = gradient;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * A dataset of normalized Input and Output values held in primitive
+ * arrays, along with the minimum and maximum of every column that was
+ * used to normalize it (see fromIOTuples for the one exception). Datasets are saved in a small binary format:
+ *
+ * magic "BBBD", version, row count, input count, output count (ints),
+ * input minima, input maxima, output minima, output maxima, every row of
+ * inputs, every row of outputs (doubles).
+ *
+ * Everything is little-endian, so a whole file can be loaded with one
+ * bulk read and no objects per value.
+ * @author Lou Brand
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Dataset{
+    public static final int MAGIC = 0x44424242; // "BBBD" read as a little-endian int
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    private int numRows, numIn, numOut;
+    private double[] inputs;    // One row of numIn values per compound
+    private double[] outputs;   // One row of numOut values per compound
+    private double[] minIn, maxIn, minOut, maxOut;
+
+    /**
+     * Creates a Dataset from normalized rows and the minima and maxima used
+     * to normalize them
+     * @param rows Number of compounds
+     * @param in Number of inputs per compound
+     * @param out Number of outputs per compound
+     * @param inputValues rows * in normalized input values
+     * @param outputValues rows * out normalized output values
+     * @param inMin Minimum of each input column
+     * @param inMax Maximum of each input column
+     * @param outMin Minimum of each output column
+     * @param outMax Maximum of each output column
+     */
+    public Dataset(int rows, int in, int out, double[] inputValues, double[] outputValues,
+                   double[] inMin, double[] inMax, double[] outMin, double[] outMax){
+        if (inputValues.length != rows * in || outputValues.length != rows * out){
+            throw new IllegalArgumentException("Dataset is not uniform!");
+        }
+        if (inMin.length != in || inMax.length != in || outMin.length != out || outMax.length != out){
+            throw new IllegalArgumentException("There must be one minimum and maximum per column!");
+        }
+        numRows = rows;
+        numIn = in;
+        numOut = out;
+        inputs = inputValues;
+        outputs = outputValues;
+        minIn = inMin;
+        maxIn = inMax;
+        minOut = outMin;
+        maxOut = outMax;
+    }
+
+    /**
+     * Reads a Dataset from a binary dataset file with a single bulk read
+     * @param filename The dataset file
+     * @return The Dataset
+     */
+    public static Dataset read(String filename) throws IOException{
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+            if (channel.size() > Integer.MAX_VALUE){
+                throw new IOException(filename + " is too large to read into memory");
+            }
+            buffer = ByteBuffer.allocate((int)channel.size());
+            while (buffer.hasRemaining()){
+                if (channel.read(buffer) < 0){
+                    throw new IOException(filename + " ended early");
+                }
+            }
+        }
+        buffer.flip();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC){
+            throw new IOException(filename + " is not a dataset file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION){
+            throw new IOException(filename + " has dataset version " + version + ", expected " + VERSION);
+        }
+        int rows = buffer.getInt();
+        int in = buffer.getInt();
+        int out = buffer.getInt();
+        if (rows < 0 || in < 0 || out < 0
+                || buffer.remaining() != 8L * (2L * in + 2L * out + (long)rows * (in + out))){
+            throw new IOException(filename + " has the wrong size for its header");
+        }
+
+        double[] inMin = new double[in];
+        double[] inMax = new double[in];
+        double[] outMin = new double[out];
+        double[] outMax = new double[out];
+        double[] inputValues = new double[rows * in];
+        double[] outputValues = new double[rows * out];
+        DoubleBuffer values = buffer.asDoubleBuffer();
+        values.get(inMin).get(inMax).get(outMin).get(outMax);
+        values.get(inputValues).get(outputValues);
+
+        return new Dataset(rows, in, out, inputValues, outputValues, inMin, inMax, outMin, outMax);
+    }
+
+    /**
+     * Writes this Dataset to a binary dataset file
+     * @param filename The dataset file
+     */
+    public void write(String filename) throws IOException{
+        long size = HEADER_BYTES + 8L * (2L * numIn + 2L * numOut + inputs.length + outputs.length);
+        ByteBuffer buffer = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(numRows).putInt(numIn).putInt(numOut);
+        buffer.asDoubleBuffer().put(minIn).put(maxIn).put(minOut).put(maxOut).put(inputs).put(outputs);
+        buffer.position(0);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Creates the list of IOTuples used by the NeuralNetwork tests
+     * @return IOs One IOTuple per compound
+     */
+    public ArrayList<IOTuple> toIOTuples(){
+        ArrayList<IOTuple> IOs = new ArrayList<>();
+        for (int r = 0; r < numRows; r++){
+            ArrayList<Double> currentInputs = new ArrayList<>();
+            ArrayList<Double> currentOutputs = new ArrayList<>();
+            for (int i = 0; i < numIn; i++){
+                currentInputs.add(inputs[r * numIn + i]);
+            }
+            for (int k = 0; k < numOut; k++){
+                currentOutputs.add(outputs[r * numOut + k]);
+            }
+            IOs.add(new IOTuple(new Input(currentInputs), new Output(currentOutputs)));
+        }
+        return IOs;
+    }
+
+    /**
+     * Packs a list of IOTuples into a Dataset, so training can read the
+     * values from primitive arrays instead of boxed lists. The values are
+     * kept as they are (they are already normalized). IOTuples don't carry
+     * the ranges they were normalized with, so the minimum and maximum of
+     * each column are those of the given normalized values, not the values
+     * before normalization. Such a Dataset is for training and scoring; it
+     * can't denormalize, and a file written from it doesn't have the
+     * header DataParser writes.
+     * @param IOs The IOTuples, all the same size
+     * @return The Dataset
+     */
+    public static Dataset fromIOTuples(List<IOTuple> IOs){
+        if (IOs.isEmpty()){
+            throw new IllegalArgumentException("There are no IOTuples to pack!");
+        }
+        int rows = IOs.size();
+        int in = IOs.get(0).getInput().size();
+        int out = IOs.get(0).getOutput().size();
+        double[] inputValues = new double[rows * in];
+        double[] outputValues = new double[rows * out];
+        double[] inMin = new double[in];
+        double[] inMax = new double[in];
+        double[] outMin = new double[out];
+        double[] outMax = new double[out];
+        Arrays.fill(inMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(inMax, Double.NEGATIVE_INFINITY);
+        Arrays.fill(outMin, Double.POSITIVE_INFINITY);
+        Arrays.fill(outMax, Double.NEGATIVE_INFINITY);
+
+        for (int r = 0; r < rows; r++){
+            ArrayList<Double> currentInputs = IOs.get(r).getInput().getInputs();
+            ArrayList<Double> currentOutputs = IOs.get(r).getOutput().getOutputs();
+            if (currentInputs.size() != in || currentOutputs.size() != out){
+                throw new IllegalArgumentException("Dataset is not uniform!");
+            }
+            for (int i = 0; i < in; i++){
+                double value = currentInputs.get(i);
+                inputValues[r * in + i] = value;
+                inMin[i] = Math.min(inMin[i], value);
+                inMax[i] = Math.max(inMax[i], value);
+            }
+            for (int k = 0; k < out; k++){
+                double value = currentOutputs.get(k);
+                outputValues[r * out + k] = value;
+                outMin[k] = Math.min(outMin[k], value);
+                outMax[k] = Math.max(outMax[k], value);
+            }
+        }
+        return new Dataset(rows, in, out, inputValues, outputValues, inMin, inMax, outMin, outMax);
+    }
+
+    /**
+     * Gets the number of compounds in this Dataset
+     * @return numRows The number of rows
+     */
+    public int size(){
+        return numRows;
+    }
+
+    /**
+     * Gets the number of inputs per compound
+     * @return numIn The number of inputs
+     */
+    public int numInputs(){
+        return numIn;
+    }
+
+    /**
+     * Gets the number of outputs per compound
+     * @return numOut The number of outputs
+     */
+    public int numOutputs(){
+        return numOut;
+    }
+
+    /**
+     * Gets every normalized input value, one row of numInputs() per compound
+     * @return inputs The input values
+     */
+    public double[] getInputs(){
+        return inputs;
+    }
+
+    /**
+     * Gets every normalized output value, one row of numOutputs() per compound
+     * @return outputs The output values
+     */
+    public double[] getOutputs(){
+        return outputs;
+    }
+
+    /**
+     * Gets the minimum of each input column before normalization (of the
+     * normalized values, for a Dataset packed by fromIOTuples)
+     * @return minIn The input minima
+     */
+    public double[] getInputMinima(){
+        return minIn;
+    }
+
+    /**
+     * Gets the maximum of each input column before normalization (of the
+     * normalized values, for a Dataset packed by fromIOTuples)
+     * @return maxIn The input maxima
+     */
+    public double[] getInputMaxima(){
+        return maxIn;
+    }
+
+    /**
+     * Gets the minimum of each output column before normalization (of the
+     * normalized values, for a Dataset packed by fromIOTuples)
+     * @return minOut The output minima
+     */
+    public double[] getOutputMinima(){
+        return minOut;
+    }
+
+    /**
+     * Gets the maximum of each output column before normalization (of the
+     * normalized values, for a Dataset packed by fromIOTuples)
+     * @return maxOut The output maxima
+     */
+    public double[] getOutputMaxima(){
+        return maxOut;
+    }
+}
@@ -12,18 +12,16 @@ public class Driver{
         ArrayList<IOTuple> inputOutputTuples;
         
         try{
-            InputStream file = new FileInputStream("pybelSmiles.ser");
-            InputStream buffer = new BufferedInputStream(file);
-            ObjectInput input = new ObjectInputStream (buffer);
-            inputOutputTuples = (ArrayList<IOTuple>)input.readObject();
+            inputOutputTuples = Dataset.read("pybelData.bin").toIOTuples();
 
             int GEN_EPOCHS = 5;
             int EPOCHS = 50;
 			int POP_SIZE = 50;
+            int THREADS = Runtime.getRuntime().availableProcessors();
+            long SEED = 42;
             
-            FindSchema fs = new FindSchema(inputOutputTuples, GEN_EPOCHS, EPOCHS, POP_SIZE);
+            FindSchema fs = new FindSchema(inputOutputTuples, GEN_EPOCHS, EPOCHS, POP_SIZE, THREADS, SEED);
         }
-        catch(ClassNotFoundException ex){System.out.println("The class wasn't found!");}
         catch(IOException ex){System.out.println("There was an error!");}
 	}
 }
@@ -7,6 +7,7 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
@@ -15,6 +16,8 @@ import java.io.IOException;
 public class FindSchema{
     private ArrayList<IOTuple> myData;
     private int epochs, genEpochs, populationSize;
+    private int numThreads;
+    private Random rand;
     
     private final double TOLERANCE = .5;
     private final int NUM_FOLDS = 25;
@@ -27,14 +30,19 @@ public class FindSchema{
      * @param geneticEpochs How many epochs the genetic algorithm will run
      * @param numEpochs How backpropagation cycles each NeuralNetwork will
      * be trained
+     * @param popSize Number of NeuralNetworks in the Population
+     * @param threads Number of NeuralNetworks trained at once
+     * @param seed Seed that makes the whole search reproducible
      */
-    public FindSchema(ArrayList<IOTuple> data, int geneticEpochs, int numEpochs, int popSize){
+    public FindSchema(ArrayList<IOTuple> data, int geneticEpochs, int numEpochs, int popSize, int threads, long seed){
         genEpochs = geneticEpochs;
         epochs = numEpochs;
 		populationSize = popSize;
+        numThreads = threads;
+        rand = new Random(seed);
         myData = data; 
         
-        Collections.shuffle(myData);
+        Collections.shuffle(myData, rand);
         findBestSchema();   
     }
     
@@ -43,8 +51,8 @@ public class FindSchema{
      * @return (Hopefully) the optimal Schema
      */
     public Schema bestSchema(){
-        Collections.shuffle(myData);
-        Population myPop = new Population(populationSize, myData);
+        Collections.shuffle(myData, rand);
+        Population myPop = new Population(populationSize, myData, numThreads, rand.nextLong());
 
         for (int j = 0; j < genEpochs; j++){
             System.out.println("Epoch: " + j);
@@ -16,14 +16,29 @@ public class NeuralNetwork implements Comparable<NeuralNetwork>{
     private ArrayList<IOTuple> myTrainingSet;
     private Schema mySchema;
     private final double TOLERANCE = .5;
+    private int myFitness;
+    private boolean fitnessKnown = false;
+    private Random rand;
 
     /**
      * Initializes a NeuralNetwork with a Schema object that will be
      * optimized with a genetic algorithm
      */
     public NeuralNetwork(ArrayList<IOTuple> trainingSet, Schema structure){
+        this(trainingSet, structure, new Random());
+    }
+
+    /**
+     * Initializes a NeuralNetwork with a Schema object and a source of
+     * random numbers for its starting weights and its children
+     * @param trainingSet The training set
+     * @param structure The Schema to be optimized
+     * @param random The source of random numbers for this NeuralNetwork
+     */
+    public NeuralNetwork(ArrayList<IOTuple> trainingSet, Schema structure, Random random){
         myTrainingSet = trainingSet;
         mySchema = structure;
+        rand = random;
         initialize();
     }
 
@@ -60,12 +75,12 @@ public class NeuralNetwork implements Comparable<NeuralNetwork>{
         
         for (Neuron inputNeuron : myInput.getNeurons()){
             for (Neuron hiddenNeuron : myHidden.getNeurons()){
-                Synapse inputToHidden = new Synapse(inputNeuron, hiddenNeuron);
+                Synapse inputToHidden = new Synapse(inputNeuron, hiddenNeuron, rand);
             }
         }
         for (Neuron hiddenNeuron : myHidden.getNeurons()){
             for (Neuron outputNeuron : myOutput.getNeurons()){
-                Synapse hiddenToOutput = new Synapse(hiddenNeuron, outputNeuron);
+                Synapse hiddenToOutput = new Synapse(hiddenNeuron, outputNeuron, rand);
             }
         }
     }
@@ -112,6 +127,7 @@ public class NeuralNetwork implements Comparable<NeuralNetwork>{
     public void backProp(){
         double LEARNING_RATE = mySchema.getLearningRate();
         double MOMENTUM = mySchema.getMomentum();
+        invalidateFitness();
         
         for (int i = 0; i < myOutput.size(); i++){
             Neuron outputNeuron = myOutput.get(i);
@@ -229,10 +245,10 @@ public class NeuralNetwork implements Comparable<NeuralNetwork>{
         double myHR = mySchema.getHiddenRatio();
         double partnerHR = partner.getSchema().getHiddenRatio();
         
-        double pivot = Math.random();
+        double pivot = rand.nextDouble();
         
-        Schema sonSchema = new Schema();
-        Schema daughterSchema = new Schema();
+        Schema sonSchema = new Schema(rand);
+        Schema daughterSchema = new Schema(rand);
         
         sonSchema.setLearningRate(myLR * pivot + partnerLR * (1.0 - pivot));
         daughterSchema.setLearningRate(myLR * (1.0 - pivot) + partnerLR * pivot);
@@ -244,8 +260,8 @@ public class NeuralNetwork implements Comparable<NeuralNetwork>{
         sonSchema.mutate();
         daughterSchema.mutate();
         
-        NeuralNetwork son = new NeuralNetwork(myTrainingSet, sonSchema);
-        NeuralNetwork daughter = new NeuralNetwork(myTrainingSet, daughterSchema);
+        NeuralNetwork son = new NeuralNetwork(myTrainingSet, sonSchema, rand);
+        NeuralNetwork daughter = new NeuralNetwork(myTrainingSet, daughterSchema, rand);
         
         ArrayList<NeuralNetwork> children = new ArrayList<NeuralNetwork>();
         children.add(son);
@@ -260,19 +276,37 @@ public class NeuralNetwork implements Comparable<NeuralNetwork>{
      * @return Who's fittest?
      */
     public int compareTo(NeuralNetwork other){
-        Integer myFitness = this.getFitness();
-        Integer yourFitness = other.getFitness();
-        
-        return myFitness.compareTo(yourFitness);
+        return Integer.compare(this.getFitness(), other.getFitness());
     }
     
     /**
      * Gets the fitness associated with this NeuralNetwork. Fitness is 
      * correlated to how well the NeuralNetwork performs on it's training
-     * set.
-     * @return numRight The number of correct predictions
+     * set. It is only calculated again after the NeuralNetwork has trained
+     * or been given a new training set.
+     * @return myFitness The number of correct predictions
      */
     public int getFitness(){
+        if (!fitnessKnown){
+            myFitness = calculateFitness();
+            fitnessKnown = true;
+        }
+        return myFitness;
+    }
+    
+    /**
+     * Forgets the stored fitness so the next call to getFitness
+     * calculates it again. Call this whenever the weights change.
+     */
+    public void invalidateFitness(){
+        fitnessKnown = false;
+    }
+    
+    /**
+     * Runs the whole training set through this NeuralNetwork
+     * @return numRight The number of correct predictions
+     */
+    private int calculateFitness(){
         //Collections.shuffle(myTrainingSet);
         int numRight = 0;
         
@@ -341,5 +375,6 @@ public class NeuralNetwork implements Comparable<NeuralNetwork>{
      */
     public void assignTrainingSet(ArrayList<IOTuple> newTrainingSet){
         myTrainingSet = newTrainingSet;
+        invalidateFitness();
     }
 }
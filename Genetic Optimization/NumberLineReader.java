@@ -0,0 +1,212 @@
+/**
+ * Reads lines of delimited numbers (like the lines of pybelData.txt) from
+ * a stream, one line at a time. Values are parsed straight from the bytes
+ * into a reusable primitive buffer, so reading a line creates no objects.
+ * Empty values are only allowed at the end of a line.
+ * @author Lou Brand
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class NumberLineReader implements Closeable{
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private InputStream in;
+    private byte delimiter;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfFile = false;
+    private byte[] token = new byte[64];
+    private double[] values = new double[64];
+    private int lineNumber = 0;
+
+    /**
+     * Creates a NumberLineReader
+     * @param stream The stream of lines
+     * @param delim The byte between values on a line
+     */
+    public NumberLineReader(InputStream stream, byte delim){
+        in = stream;
+        delimiter = delim;
+    }
+
+    /**
+     * Reads the next line into the value buffer
+     * @return The number of values on the line (0 for a blank line), or -1
+     * when there are no more lines
+     */
+    public int readLine() throws IOException{
+        if (endOfFile){
+            return -1;
+        }
+        int lineLength = 0;
+        int emptyValues = 0;
+        int tokenLength = 0;
+        boolean lineStarted = false;
+        lineNumber++;
+
+        while (true){
+            if (position == limit){
+                limit = in.read(buffer);
+                position = 0;
+                if (limit < 0){
+                    limit = 0;
+                    endOfFile = true;
+                }
+            }
+            // The end of the file finishes the last line as if it ended with a newline
+            byte current = endOfFile ? (byte)'\n' : buffer[position++];
+            if (current == delimiter || current == '\n'){
+                if (tokenLength > 0){
+                    if (emptyValues > 0){
+                        throw new IllegalArgumentException("Missing value on line " + lineNumber);
+                    }
+                    if (lineLength == values.length){
+                        values = Arrays.copyOf(values, 2 * values.length);
+                    }
+                    values[lineLength++] = parseDouble(token, tokenLength);
+                    tokenLength = 0;
+                } else if (current == delimiter){
+                    emptyValues++;
+                }
+                if (current == delimiter){
+                    lineStarted = true;
+                } else {
+                    if (lineStarted && lineLength == 0){
+                        throw new IllegalArgumentException("Missing value on line " + lineNumber);
+                    }
+                    if (endOfFile && !lineStarted){
+                        return -1;
+                    }
+                    return lineLength;
+                }
+            } else if (current != '\r'){
+                if (tokenLength == token.length){
+                    token = Arrays.copyOf(token, 2 * token.length);
+                }
+                token[tokenLength++] = current;
+                lineStarted = true;
+            }
+        }
+    }
+
+    /**
+     * Gets the values of the last line read. Only the first readLine()
+     * values belong to that line, and the buffer is reused by the next line.
+     * @return values The value buffer
+     */
+    public double[] getValues(){
+        return values;
+    }
+
+    /**
+     * Gets the number of the last line read, starting at 1
+     * @return lineNumber The line number
+     */
+    public int getLineNumber(){
+        return lineNumber;
+    }
+
+    /**
+     * Closes the underlying stream
+     */
+    public void close() throws IOException{
+        in.close();
+    }
+
+    /**
+     * Parses a number from ASCII bytes. Plain decimals with at most 15
+     * significant digits are converted exactly with one multiplication or
+     * division by a power of ten; anything else is handed to
+     * Double.parseDouble, so the result always matches Double.parseDouble.
+     * @param token The bytes of the number
+     * @param length Number of bytes
+     * @return The value
+     */
+    public static double parseDouble(byte[] token, int length){
+        int i = 0;
+        boolean negative = false;
+        if (token[0] == '-' || token[0] == '+'){
+            negative = token[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;         // Significant digits in the mantissa
+        int fractionDigits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        boolean fastPath = i < length;
+
+        for (; i < length && fastPath; i++){
+            byte current = token[i];
+            if (current >= '0' && current <= '9'){
+                seenDigit = true;
+                if (mantissa != 0 || current != '0'){
+                    digits++;
+                    if (digits > 15){
+                        fastPath = false;
+                    }
+                    mantissa = mantissa * 10 + (current - '0');
+                }
+                if (seenPoint){
+                    fractionDigits++;
+                }
+            } else if (current == '.' && !seenPoint){
+                seenPoint = true;
+            } else if ((current == 'e' || current == 'E') && seenDigit){
+                exponent = parseExponent(token, i + 1, length);
+                if (exponent == Integer.MIN_VALUE){
+                    fastPath = false;
+                }
+                break;
+            } else {
+                fastPath = false;
+            }
+        }
+
+        int power = exponent - fractionDigits;
+        if (fastPath && seenDigit && power >= -22 && power <= 22){
+            double value = (double)mantissa;
+            if (power > 0){
+                value = value * POWERS_OF_TEN[power];
+            } else if (power < 0){
+                value = value / POWERS_OF_TEN[-power];
+            }
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(token, 0, length, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Parses the small exponent of a number in scientific notation
+     * @param token The bytes of the number
+     * @param start Index of the first byte after the 'e'
+     * @param length Number of bytes in the number
+     * @return The exponent, or Integer.MIN_VALUE if it is not a plain small integer
+     */
+    private static int parseExponent(byte[] token, int start, int length){
+        int i = start;
+        boolean negative = false;
+        if (i < length && (token[i] == '-' || token[i] == '+')){
+            negative = token[i] == '-';
+            i++;
+        }
+        if (i == length || length - i > 3){
+            return Integer.MIN_VALUE;
+        }
+        int exponent = 0;
+        for (; i < length; i++){
+            if (token[i] < '0' || token[i] > '9'){
+                return Integer.MIN_VALUE;
+            }
+            exponent = exponent * 10 + (token[i] - '0');
+        }
+        return negative ? -exponent : exponent;
+    }
+}
@@ -7,12 +7,18 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Population{
     private int popSize;
     private ArrayList<NeuralNetwork> myPopulation;
     private ArrayList<IOTuple> popTrainingSet;
     private final int EVOLVE_EPOCHS = 100;
+    private int numThreads;
+    private Random rand;
     
     /**
      * Initializes a Population given a size and a training set
@@ -21,13 +27,42 @@ public class Population{
      * NeuralNetwork in the Population
      */
     public Population(int size, ArrayList<IOTuple> trainingSet){
+        this(size, trainingSet, 1, new Random());
+    }
+    
+    /**
+     * Initializes a Population that trains its NeuralNetworks on several
+     * threads. The same seed always gives the same run.
+     * @param size The number of NeuralNetworks in the Population
+     * @param trainingSet The set of IOTuples that will train each
+     * NeuralNetwork in the Population
+     * @param threads Number of NeuralNetworks trained at once
+     * @param seed Seed for every random choice made by the Population
+     */
+    public Population(int size, ArrayList<IOTuple> trainingSet, int threads, long seed){
+        this(size, trainingSet, threads, new Random(seed));
+    }
+    
+    /**
+     * Creates the first generation of NeuralNetworks
+     * @param size The number of NeuralNetworks in the Population
+     * @param trainingSet The training set
+     * @param threads Number of NeuralNetworks trained at once
+     * @param random The source of every random choice made by the Population
+     */
+    private Population(int size, ArrayList<IOTuple> trainingSet, int threads, Random random){
+        if (threads < 1){
+            throw new IllegalArgumentException("The number of threads (" + threads + ") must be at least 1.");
+        }
         popSize = size;
+        numThreads = threads;
+        rand = random;
         myPopulation = new ArrayList<NeuralNetwork>();
         popTrainingSet = trainingSet;
         
         for (int i = 0; i < popSize; i++){
-            Schema currentStruct = new Schema();
-            myPopulation.add(new NeuralNetwork(popTrainingSet, currentStruct));
+            Schema currentStruct = new Schema(rand);
+            myPopulation.add(new NeuralNetwork(popTrainingSet, currentStruct, rand));
         }
     }
     
@@ -36,8 +71,7 @@ public class Population{
 	 * @param probability The probabiblity array
 	 */
 	public NeuralNetwork findParent(double[] probability){
-		Random rand = new Random();
-		double x = Math.random()*(probability[probability.length-1]);
+		double x = rand.nextDouble()*(probability[probability.length-1]);
 		boolean found = false;
 		int lowIndex = 0;
 		int highIndex = probability.length-1;
@@ -65,16 +99,8 @@ public class Population{
      */
     public void evolve(){
         ArrayList<NeuralNetwork> nextGen = new ArrayList<NeuralNetwork>();
-                            
-        for (int j = 0; j < EVOLVE_EPOCHS; j++){
-            for (NeuralNetwork currentNN : myPopulation){
-                for (IOTuple trainingIO : popTrainingSet){
-                    currentNN.newIO(trainingIO);
-                    currentNN.feedForward();
-                    currentNN.backProp();
-                }
-            }
-        }
+        
+        trainAndEvaluate();
         
         double[] scaledProbability = scaledFitness();
         
@@ -84,8 +110,8 @@ public class Population{
         Schema topSchema = top.getSchema();
         Schema secondSchema = secondPlace.getSchema();
         
-        nextGen.add(new NeuralNetwork(popTrainingSet, topSchema));
-        nextGen.add(new NeuralNetwork(popTrainingSet, secondSchema));
+        nextGen.add(new NeuralNetwork(popTrainingSet, topSchema, rand));
+        nextGen.add(new NeuralNetwork(popTrainingSet, secondSchema, rand));
         
         for (int i = 0; i < popSize/2 - 1; i++){
             NeuralNetwork mother = findParent(scaledProbability);
@@ -98,6 +124,41 @@ public class Population{
         myPopulation = nextGen;
     }
     
+    /**
+     * Trains every NeuralNetwork for EVOLVE_EPOCHS epochs and then
+     * calculates its fitness. Each NeuralNetwork has its own weights and
+     * only reads the shared training set, so they are trained at once.
+     */
+    private void trainAndEvaluate(){
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(numThreads, myPopulation.size()));
+        
+        try{
+            ArrayList<Future<Integer>> trained = new ArrayList<Future<Integer>>();
+            for (NeuralNetwork currentNN : myPopulation){
+                trained.add(pool.submit(() -> {
+                    for (int j = 0; j < EVOLVE_EPOCHS; j++){
+                        for (IOTuple trainingIO : popTrainingSet){
+                            currentNN.newIO(trainingIO);
+                            currentNN.feedForward();
+                            currentNN.backProp();
+                        }
+                    }
+                    return currentNN.getFitness();
+                }));
+            }
+            for (Future<Integer> current : trained){
+                current.get();
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training the Population", e);
+        } catch (ExecutionException e){
+            throw new IllegalStateException("A NeuralNetwork failed to train", e.getCause());
+        } finally{
+            pool.shutdownNow();
+        }
+    }
+    
     /**
      * Returns an array of weighted rankings that correspond to the sorted
      * array of NeuralNetwork. This array will be used to determine the
@@ -143,7 +204,7 @@ public class Population{
      * Shuffles the training set
      */
     public void shuffleData(){
-        Collections.shuffle(popTrainingSet);
+        Collections.shuffle(popTrainingSet, rand);
     }
     
     /**
@@ -152,12 +213,14 @@ public class Population{
      */
     public void initializeEdges(){
         int numEdges = myPopulation.get(0).getEdges().size();
-        Random rand = new Random();
         for (int i = 0; i < numEdges; i++){
             double weight = rand.nextDouble() * 2.0 - 1.0;
             for (NeuralNetwork current : myPopulation){
                 current.getEdges().get(i).setWeight(weight);
             }
         }
+        for (NeuralNetwork current : myPopulation){
+            current.invalidateFitness();
+        }
     }
 }
@@ -13,11 +13,22 @@ public class Schema{
     private double learningRate;
     private double momentum;
     private double hidden;
+    private Random rand;
     
     /**
      * Constructs a Schema object and randomly assigns the parameters
      */
     public Schema(){
+        this(new Random());
+    }
+    
+    /**
+     * Constructs a Schema object and randomly assigns the parameters from
+     * a given source of random numbers
+     * @param random The source of random numbers for this Schema
+     */
+    public Schema(Random random){
+        rand = random;
         randomStructure();
     }
     
@@ -25,10 +36,10 @@ public class Schema{
      * Randomly assign the parameters for this Schema
      */
     public void randomStructure(){
-        learningRate = Math.random() * 5;   // [0, 5]
-        momentum = Math.random();       // [0, 1]
-        hidden = Math.random();         // [0, 1]
-        //threshold = Math.random();
+        learningRate = rand.nextDouble() * 5;   // [0, 5]
+        momentum = rand.nextDouble();       // [0, 1]
+        hidden = rand.nextDouble();         // [0, 1]
+        //threshold = rand.nextDouble();
     }
     
     /**
@@ -86,18 +97,18 @@ public class Schema{
         double maxPercentChange = .01; // 1%
 		double mutationProbability = .05;
         
-        if (Math.random() < mutationProbability){
-			double change = Math.random()*2.0 - 1; //[-1, 1]
+        if (rand.nextDouble() < mutationProbability){
+			double change = rand.nextDouble()*2.0 - 1; //[-1, 1]
 			setLearningRate(learningRate + change * maxPercentChange * learningRate);
 		}
         
-        if (Math.random() < mutationProbability){
-			double change = Math.random()*2.0 - 1; //[-1, 1]
+        if (rand.nextDouble() < mutationProbability){
+			double change = rand.nextDouble()*2.0 - 1; //[-1, 1]
 			setMomentum(momentum + change * maxPercentChange * momentum);
 		}
         
-        if (Math.random() < mutationProbability){
-			double change = Math.random()*2.0 - 1; //[-1, 1]
+        if (rand.nextDouble() < mutationProbability){
+			double change = rand.nextDouble()*2.0 - 1; //[-1, 1]
 			setHiddenRatio(hidden + change * maxPercentChange * hidden);
 		}
     }
@@ -16,20 +16,31 @@ public class Synapse{
     * @param to The Neuron this edge is going to
     */
     public Synapse(Neuron from, Neuron to){
+        this(from, to, new Random());
+    }
+
+    /**
+    * Creates a Synapse whose starting weight comes from a given source of
+    * random numbers, so a seeded run always builds the same Synapses
+    * @param from The Neuron this edge is coming from
+    * @param to The Neuron this edge is going to
+    * @param rand The source of the random starting weight
+    */
+    public Synapse(Neuron from, Neuron to, Random rand){
         origin = from;
         destination = to;
         from.addOutput(this);
         to.addInput(this);
-        setRandomWeight();
+        setRandomWeight(rand);
         momentum = 0;
     }
 
     /**
     * Gives this Synapse a random value between [-1, 1]
     * This parameter could theoretically be varied via our genetic algorithm
+    * @param rand The source of the random weight
     */
-    private void setRandomWeight(){
-        Random rand = new Random();
+    private void setRandomWeight(Random rand){
         weight = rand.nextDouble() * 2.0 - 1.0;
     }
 